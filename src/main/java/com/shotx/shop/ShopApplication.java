@@ -2,8 +2,10 @@ package com.shotx.shop;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ShopApplication {
     //	@Value("${stripe.api.key}")
 //	private static String stripeApiKey;
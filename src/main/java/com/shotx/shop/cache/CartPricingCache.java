@@ -0,0 +1,49 @@
+package com.shotx.shop.cache;
+
+import com.shotx.shop.model.CartItem;
+import com.shotx.shop.model.PricedCart;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Bounded per-node cache of priced carts.
+ * <p>
+ * Keys are the cart's lines (product id and quantity, in cart order), under the catalog
+ * structure version: a change to the cart gives a new key, and so does any committed product
+ * write other than a stock change. Cached values carry prices only; callers apply the current
+ * stock levels. Carts with the same lines share an entry. Metrics are published as
+ * cache.* tagged cache=cart.pricing.
+ */
+@Component
+public class CartPricingCache {
+
+    private final VersionedCache<List<Long>, PricedCart> cache;
+
+    public CartPricingCache(CatalogVersion catalogVersion,
+                            MeterRegistry meterRegistry,
+                            @Value("${shop.cart-pricing-cache.size:10000}") long size) {
+        this.cache = new VersionedCache<>("cart.pricing", size, catalogVersion::structure, meterRegistry);
+    }
+
+    /**
+     * Cached pricing of the lines, computed by the loader on a miss
+     *
+     * @param items  Cart lines
+     * @param loader Prices the lines
+     * @return The priced cart
+     */
+    public PricedCart get(List<CartItem> items, Supplier<PricedCart> loader) {
+        // Lines flattened as product id, quantity, product id, quantity, ...
+        List<Long> lines = new ArrayList<>(items.size() * 2);
+        for (CartItem item : items) {
+            lines.add(item.getProductId());
+            lines.add(item.getQuantity().longValue());
+        }
+        return cache.get(lines, loader);
+    }
+}
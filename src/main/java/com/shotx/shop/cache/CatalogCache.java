@@ -0,0 +1,221 @@
+package com.shotx.shop.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shotx.shop.event.CategoryChangedEvent;
+import com.shotx.shop.event.ProductChangedEvent;
+import com.shotx.shop.model.Category;
+import com.shotx.shop.model.ProductDetail;
+import com.shotx.shop.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Two-tier cache for catalog reads shared by all nodes.
+ * <p>
+ * Each node keeps a small near-cache of deserialized values in front of JSON copies stored in
+ * Redis, so a cold node warms from Redis instead of MySQL. After a product or category write
+ * commits, the affected Redis keys are deleted and their names are published on
+ * {@link #INVALIDATION_CHANNEL}; every node, including the writer, drops them from its
+ * near-cache when the message arrives. Redis failures degrade to reading the database.
+ * <p>
+ * A database read can start before a write commits and finish after the invalidation, so fills
+ * are guarded against writing back what they read. A reader that misses Redis first takes a
+ * lease on the key and only stores its value while the lease is still there; invalidation
+ * deletes the lease together with the key. The near-cache is guarded the same way by a local
+ * invalidation counter.
+ */
+@Component
+public class CatalogCache {
+
+    public static final String INVALIDATION_CHANNEL = "catalog:invalidate";
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogCache.class);
+
+    private static final String PRODUCT_KEY = "catalog:product:";
+    private static final String CATEGORY_KEY = "catalog:category:";
+    private static final String CATEGORIES_KEY = "catalog:categories";
+    private static final String LEASE_SUFFIX = ":lease";
+    // Longest database read a lease waits for; a slower reader simply does not fill the cache
+    private static final Duration LEASE_TTL = Duration.ofSeconds(10);
+
+    // Store the value only if the caller's lease survived, i.e. no invalidation ran since it was taken
+    private static final RedisScript<Long> FILL = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[2]) ~= ARGV[1] then return 0 end "
+                    + "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) "
+                    + "redis.call('DEL', KEYS[2]) "
+                    + "return 1",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ProductRepository productRepository;
+    private final Cache<String, Object> nearCache;
+    private final Duration ttl;
+    // Bumped by every local eviction; a value read before a bump is not kept in the near-cache
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CatalogCache(StringRedisTemplate redisTemplate,
+                        ObjectMapper objectMapper,
+                        ProductRepository productRepository,
+                        RedisMessageListenerContainer listenerContainer,
+                        @Value("${shop.catalog-cache.ttl-minutes:10}") long ttlMinutes,
+                        @Value("${shop.catalog-cache.near-size:10000}") long nearSize,
+                        @Value("${shop.catalog-cache.near-ttl-seconds:60}") long nearTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.productRepository = productRepository;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        // The near-cache TTL only bounds staleness should an invalidation message be lost
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearSize)
+                .expireAfterWrite(Duration.ofSeconds(nearTtlSeconds))
+                .build();
+
+        listenerContainer.addMessageListener(
+                (message, pattern) -> evictLocal(new String(message.getBody(), StandardCharsets.UTF_8).split(",")),
+                new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    public Optional<ProductDetail> getProduct(Long id, Supplier<Optional<ProductDetail>> loader) {
+        JavaType type = objectMapper.getTypeFactory().constructType(ProductDetail.class);
+        return Optional.ofNullable(get(PRODUCT_KEY + id, type, () -> loader.get().orElse(null)));
+    }
+
+    public Optional<Category> getCategory(Long id, Supplier<Optional<Category>> loader) {
+        JavaType type = objectMapper.getTypeFactory().constructType(Category.class);
+        return Optional.ofNullable(get(CATEGORY_KEY + id, type, () -> loader.get().orElse(null)));
+    }
+
+    public List<Category> getCategories(Supplier<List<Category>> loader) {
+        JavaType type = objectMapper.getTypeFactory().constructCollectionType(List.class, Category.class);
+        return get(CATEGORIES_KEY, type, loader);
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        // Nothing can be cached under a brand new id
+        if (event.getType() != ProductChangedEvent.Type.CREATED) {
+            invalidate(List.of(PRODUCT_KEY + event.getProductId()));
+        }
+    }
+
+    // Products embed their category, so a rename also invalidates the products in it
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        List<String> keys = new ArrayList<>();
+        keys.add(CATEGORIES_KEY);
+        keys.add(CATEGORY_KEY + event.getCategoryId());
+        if (event.getType() == CategoryChangedEvent.Type.UPDATED) {
+            productRepository.findIdsByCategoryId(event.getCategoryId())
+                    .forEach(productId -> keys.add(PRODUCT_KEY + productId));
+        }
+        invalidate(keys);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(String key, JavaType type, Supplier<T> loader) {
+        Object local = nearCache.getIfPresent(key);
+        if (local != null) {
+            return (T) local;
+        }
+
+        long generation = evictions.get();
+        T value = readShared(key, type);
+        if (value == null) {
+            String lease = takeLease(key);
+            value = loader.get();
+            if (value == null) {
+                return null;
+            }
+            if (lease != null) {
+                writeShared(key, lease, value);
+            }
+        }
+        nearCache.put(key, value);
+        // An eviction since the read may have missed the entry just put; drop it ourselves
+        if (evictions.get() != generation) {
+            nearCache.invalidate(key);
+        }
+        return value;
+    }
+
+    private String takeLease(String key) {
+        String lease = UUID.randomUUID().toString();
+        try {
+            redisTemplate.opsForValue().set(key + LEASE_SUFFIX, lease, LEASE_TTL);
+            return lease;
+        } catch (RuntimeException e) {
+            log.warn("Could not take a lease on {} in Redis: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private <T> T readShared(String key, JavaType type) {
+        try {
+            String json = redisTemplate.opsForValue().get(key);
+            return json == null ? null : objectMapper.readValue(json, type);
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Could not read {} from Redis: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeShared(String key, String lease, Object value) {
+        try {
+            redisTemplate.execute(FILL, List.of(key, key + LEASE_SUFFIX),
+                    lease, objectMapper.writeValueAsString(value), Long.toString(ttl.toMillis()));
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Could not write {} to Redis: {}", key, e.getMessage());
+        }
+    }
+
+    private void invalidate(List<String> keys) {
+        // Drop our own copies right away so this node reads its own writes
+        evictLocal(keys.toArray(new String[0]));
+        List<String> redisKeys = new ArrayList<>(keys.size() * 2);
+        for (String key : keys) {
+            redisKeys.add(key);
+            redisKeys.add(key + LEASE_SUFFIX);
+        }
+        try {
+            redisTemplate.delete(redisKeys);
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, String.join(",", keys));
+        } catch (RuntimeException e) {
+            log.warn("Could not invalidate {} in Redis: {}", keys, e.getMessage());
+        }
+    }
+
+    private void evictLocal(String... keys) {
+        evictions.incrementAndGet();
+        nearCache.invalidateAll(Arrays.asList(keys));
+    }
+}
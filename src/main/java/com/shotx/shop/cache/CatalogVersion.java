@@ -0,0 +1,129 @@
+package com.shotx.shop.cache;
+
+import com.shotx.shop.event.CategoryChangedEvent;
+import com.shotx.shop.event.ProductChangedEvent;
+import com.shotx.shop.event.ProductsImportedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonically increasing versions of the catalog, bumped after committed product or category
+ * writes. {@link #current()} follows every write; {@link #structure()} ignores stock-only changes,
+ * so the caches of data that does not depend on stock survive the steady stream of sales. The
+ * counters live in Redis so all nodes agree on them; each node keeps the latest values it has
+ * seen in memory, so reading them costs nothing.
+ */
+@Component
+public class CatalogVersion {
+
+    public static final String VERSION_CHANNEL = "catalog:version";
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogVersion.class);
+
+    private static final String VERSION_KEY = "catalog:version";
+    private static final String STRUCTURE_KEY = "catalog:version:structure";
+
+    private final StringRedisTemplate redisTemplate;
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong structureVersion = new AtomicLong();
+
+    public CatalogVersion(StringRedisTemplate redisTemplate, RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        // Seeded with the clock, so a Redis that lost the keys never hands out a version twice
+        long seed = System.currentTimeMillis();
+        version.set(readShared(VERSION_KEY, seed));
+        structureVersion.set(readShared(STRUCTURE_KEY, seed));
+
+        // Messages carry both versions as "current,structure"
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String[] versions = new String(message.getBody(), StandardCharsets.UTF_8).split(",");
+            advance(version, Long.parseLong(versions[0]));
+            if (versions.length > 1) {
+                advance(structureVersion, Long.parseLong(versions[1]));
+            }
+        }, new ChannelTopic(VERSION_CHANNEL));
+    }
+
+    /**
+     * @return Version of everything served, stock included
+     */
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * @return Version of everything but stock levels: names, prices, categories and images
+     */
+    public long structure() {
+        return structureVersion.get();
+    }
+
+    // Runs after the cache invalidations, so a client that sees the new version reads fresh data
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        bump(event.getType() != ProductChangedEvent.Type.STOCK);
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsImported(ProductsImportedEvent event) {
+        bump(true);
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        bump(true);
+    }
+
+    private long readShared(String key, long seed) {
+        try {
+            redisTemplate.opsForValue().setIfAbsent(key, Long.toString(seed));
+            String shared = redisTemplate.opsForValue().get(key);
+            return shared == null ? seed : Long.parseLong(shared);
+        } catch (RuntimeException e) {
+            log.warn("Could not read {} from Redis: {}", key, e.getMessage());
+            return seed;
+        }
+    }
+
+    private void bump(boolean structural) {
+        try {
+            long next = increment(VERSION_KEY, version);
+            long nextStructure = structural ? increment(STRUCTURE_KEY, structureVersion) : structureVersion.get();
+            redisTemplate.convertAndSend(VERSION_CHANNEL, next + "," + nextStructure);
+        } catch (RuntimeException e) {
+            log.warn("Could not bump the catalog version in Redis: {}", e.getMessage());
+            version.incrementAndGet();
+            if (structural) {
+                structureVersion.incrementAndGet();
+            }
+        }
+    }
+
+    private long increment(String key, AtomicLong local) {
+        Long next = redisTemplate.opsForValue().increment(key);
+        if (next == null || next <= local.get()) {
+            // The key was lost (Redis restart): carry on from our own counter
+            next = local.get() + 1;
+            redisTemplate.opsForValue().set(key, Long.toString(next));
+        }
+        advance(local, next);
+        return next;
+    }
+
+    private static void advance(AtomicLong local, long next) {
+        local.accumulateAndGet(next, Math::max);
+    }
+}
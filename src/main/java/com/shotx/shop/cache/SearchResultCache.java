@@ -0,0 +1,49 @@
+package com.shotx.shop.cache;
+
+import com.shotx.shop.search.CatalogIndexer;
+import com.shotx.shop.search.SearchHit;
+import com.shotx.shop.search.SearchTokenizer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Bounded per-node cache of search hits (product ids and scores, never entities).
+ * <p>
+ * Keys are the normalized query and the sorted category filter, under the search generation of
+ * this node's index rather than the shared catalog version: a write committed on another node
+ * reaches the index after the version, and hits computed in between would be cached under the new
+ * version. Stock-only changes leave the generation alone, relevance does not depend on stock.
+ * Metrics are published as cache.* tagged cache=search.results.
+ */
+@Component
+public class SearchResultCache {
+
+    private final VersionedCache<Key, List<SearchHit>> cache;
+
+    public SearchResultCache(CatalogIndexer catalogIndexer,
+                             MeterRegistry meterRegistry,
+                             @Value("${shop.search-cache.size:5000}") long size) {
+        this.cache = new VersionedCache<>("search.results", size, catalogIndexer::searchGeneration, meterRegistry);
+    }
+
+    private record Key(String query, List<Long> categoryIds) {}
+
+    /**
+     * Cached hits for a query, computed by the loader on a miss
+     *
+     * @param query       Free text as typed
+     * @param categoryIds Optional category filter, in any order
+     * @param loader      Runs the search
+     * @return Hits in relevance order
+     */
+    public List<SearchHit> get(String query, Collection<Long> categoryIds, Supplier<List<SearchHit>> loader) {
+        List<Long> categories = categoryIds == null ? List.of()
+                : categoryIds.stream().distinct().sorted().toList();
+        return cache.get(new Key(SearchTokenizer.normalize(query), categories), () -> List.copyOf(loader.get()));
+    }
+}
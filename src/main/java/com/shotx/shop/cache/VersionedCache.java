@@ -0,0 +1,49 @@
+package com.shotx.shop.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded per-node Caffeine cache keyed by a catalog version as well as the caller's key.
+ * <p>
+ * A version bump makes every older entry unreachable without any invalidation; stale entries
+ * age out under Caffeine's size-based (W-TinyLFU) eviction, which also keeps the hot keys
+ * resident. Hit ratio and evictions are published as cache.* metrics tagged with the cache name.
+ *
+ * @param <K> Caller's key, a value type
+ * @param <V> Cached value, shared between callers so it should be immutable
+ */
+public class VersionedCache<K, V> {
+
+    private record Key<K>(K key, long version) {}
+
+    private final LongSupplier version;
+    private final Cache<Key<K>, V> cache;
+
+    /**
+     * @param name          Cache name in the metrics
+     * @param size          Maximum number of entries
+     * @param version       Current version, read on every lookup
+     * @param meterRegistry Registry for the cache metrics
+     */
+    public VersionedCache(String name, long size, LongSupplier version, MeterRegistry meterRegistry) {
+        this.version = version;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(size)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+
+    /**
+     * The value cached for the key at the current version, computed by the loader on a miss
+     */
+    public V get(K key, Supplier<V> loader) {
+        return cache.get(new Key<>(key, version.getAsLong()), k -> loader.get());
+    }
+}
@@ -0,0 +1,149 @@
+package com.shotx.shop.cart;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deletes carts that have not changed for {@code shop.cart.sweep.max-idle}, with their items.
+ * <p>
+ * Idle carts are walked in (last_modified, id) order with a keyset cursor and deleted in
+ * batches of {@code shop.cart.sweep.batch-size}, each batch in its own short transaction, so
+ * locks are only ever held on one batch. A batch re-reads its carts with a locking read and
+ * skips any that were changed after they were listed. With {@code shop.cart.store=redis} the
+ * deleted carts are dropped from Redis as well once the batch commits.
+ */
+@Component
+public class AbandonedCartSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(AbandonedCartSweeper.class);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<RedisCartStore> redisCartStore;
+    private final Counter cartsReclaimed;
+    private final Counter itemsReclaimed;
+    private final Timer sweepTimer;
+
+    @Value("${shop.cart.sweep.enabled}")
+    private boolean enabled;
+
+    @Value("${shop.cart.sweep.max-idle}")
+    private Duration maxIdle;
+
+    @Value("${shop.cart.sweep.batch-size}")
+    private int batchSize;
+
+    private record Cursor(Timestamp lastModified, long id) {}
+
+    // Counts deleted, and the cart version each deleted cart was last flushed from per username
+    private record Deleted(long carts, long items, Map<String, Long> flushedVersions) {}
+
+    public AbandonedCartSweeper(NamedParameterJdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ObjectProvider<RedisCartStore> redisCartStore,
+                                MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.redisCartStore = redisCartStore;
+        this.cartsReclaimed = Counter.builder("cart.sweeper.reclaimed")
+                .description("Rows deleted by the abandoned cart sweeper")
+                .tag("table", "cart")
+                .register(meterRegistry);
+        this.itemsReclaimed = Counter.builder("cart.sweeper.reclaimed")
+                .description("Rows deleted by the abandoned cart sweeper")
+                .tag("table", "cart_item")
+                .register(meterRegistry);
+        this.sweepTimer = Timer.builder("cart.sweeper.duration")
+                .description("Time spent on one sweep of abandoned carts")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${shop.cart.sweep.interval-ms}", initialDelayString = "${shop.cart.sweep.interval-ms}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(maxIdle));
+        long carts = 0;
+        long items = 0;
+        Cursor cursor = new Cursor(new Timestamp(0), 0);
+        try {
+            while (true) {
+                List<Cursor> idle = jdbcTemplate.query(
+                        "SELECT id, last_modified FROM cart"
+                                + " WHERE last_modified < :cutoff"
+                                + " AND (last_modified > :lastModified OR (last_modified = :lastModified AND id > :id))"
+                                + " ORDER BY last_modified, id LIMIT :limit",
+                        new MapSqlParameterSource()
+                                .addValue("cutoff", cutoff)
+                                .addValue("lastModified", cursor.lastModified())
+                                .addValue("id", cursor.id())
+                                .addValue("limit", batchSize),
+                        (rs, row) -> new Cursor(rs.getTimestamp("last_modified"), rs.getLong("id")));
+                if (idle.isEmpty()) {
+                    break;
+                }
+                Deleted deleted = deleteBatch(idle.stream().map(Cursor::id).toList(), cutoff);
+                redisCartStore.ifAvailable(store -> store.evictSwept(deleted.flushedVersions()));
+                carts += deleted.carts();
+                items += deleted.items();
+                cartsReclaimed.increment(deleted.carts());
+                itemsReclaimed.increment(deleted.items());
+                if (idle.size() < batchSize) {
+                    break;
+                }
+                cursor = idle.get(idle.size() - 1);
+            }
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            sweepTimer.record(Duration.ofNanos(elapsed));
+            if (carts > 0) {
+                log.info("Swept {} abandoned carts and {} cart items in {} ms", carts, items,
+                        Duration.ofNanos(elapsed).toMillis());
+            }
+        }
+    }
+
+    private Deleted deleteBatch(List<Long> ids, Timestamp cutoff) {
+        return transactionTemplate.execute(status -> {
+            // Lock the batch, leaving out carts changed since they were listed
+            List<Long> locked = new ArrayList<>();
+            Map<String, Long> flushedVersions = new HashMap<>();
+            jdbcTemplate.query(
+                    "SELECT id, username, flushed_version FROM cart"
+                            + " WHERE id IN (:ids) AND last_modified < :cutoff FOR UPDATE",
+                    new MapSqlParameterSource().addValue("ids", ids).addValue("cutoff", cutoff),
+                    rs -> {
+                        locked.add(rs.getLong("id"));
+                        flushedVersions.put(rs.getString("username"), rs.getLong("flushed_version"));
+                    });
+            if (locked.isEmpty()) {
+                return new Deleted(0, 0, Map.of());
+            }
+            MapSqlParameterSource batch = new MapSqlParameterSource("ids", locked);
+            int items = jdbcTemplate.update("DELETE FROM cart_item WHERE cart_id IN (:ids)", batch);
+            int carts = jdbcTemplate.update("DELETE FROM cart WHERE id IN (:ids)", batch);
+            return new Deleted(carts, items, flushedVersions);
+        });
+    }
+}
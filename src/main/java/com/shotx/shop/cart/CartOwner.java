@@ -0,0 +1,18 @@
+package com.shotx.shop.cart;
+
+/**
+ * Whose cart a request is about: a signed-in user, or a guest holding a cart token
+ *
+ * @param id    Username, or the guest cart token
+ * @param guest Whether this is a guest cart
+ */
+public record CartOwner(String id, boolean guest) {
+
+    public static CartOwner user(String username) {
+        return new CartOwner(username, false);
+    }
+
+    public static CartOwner guest(String token) {
+        return new CartOwner(token, true);
+    }
+}
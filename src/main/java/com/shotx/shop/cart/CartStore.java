@@ -0,0 +1,59 @@
+package com.shotx.shop.cart;
+
+import com.shotx.shop.model.Cart;
+
+import java.util.Map;
+
+/**
+ * Where user carts live. Selected with {@code shop.cart.store}: {@code jpa} (the default) keeps
+ * them in the cart tables, {@code redis} keeps them in Redis and writes them back in batches.
+ * Guest carts always live in {@link GuestCartStore}, keyed by cart token instead of username.
+ * Stock checks are the caller's job.
+ */
+public interface CartStore {
+
+    /**
+     * @return The user's cart, created empty if there is none
+     */
+    Cart getCart(String username);
+
+    /**
+     * The user's cart for display, without the locking that {@link #getCart} may take to
+     * prepare a change
+     *
+     * @return The user's cart, created empty if there is none
+     */
+    default Cart readCart(String username) {
+        return getCart(username);
+    }
+
+    /**
+     * Add to the quantity of a product in the cart, adding the line if needed. A result of
+     * zero or less removes the line.
+     *
+     * @param username Cart owner
+     * @param productId Product ID
+     * @param delta     Quantity to add, negative to take away
+     * @return The resulting quantity
+     */
+    int addQuantity(String username, Long productId, int delta);
+
+    /**
+     * Set the quantity of a product already in the cart
+     *
+     * @return False when the product is not in the cart; nothing is changed then
+     */
+    boolean setQuantity(String username, Long productId, int quantity);
+
+    void removeItem(String username, Long productId);
+
+    /**
+     * Write several lines at once, all or nothing
+     *
+     * @param username   Cart owner
+     * @param basis      The cart the quantities were computed from, as returned by {@link #getCart}
+     * @param quantities New quantity per product, zero to remove the line
+     * @return False when the cart changed since {@code basis} was read; nothing is written then
+     */
+    boolean applyQuantities(String username, Cart basis, Map<Long, Integer> quantities);
+}
@@ -0,0 +1,176 @@
+package com.shotx.shop.cart;
+
+import com.shotx.shop.model.Cart;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Carts of anonymous shoppers, keyed by an opaque cart token and kept only in Redis, in the
+ * same hash layout as {@link RedisCartStore}. Every read or write extends the expiry, so a cart
+ * lives as long as it is in use and disappears on its own otherwise; guest traffic never
+ * touches the database. At login the cart is taken out of Redis and merged into the user's.
+ */
+@Component
+public class GuestCartStore implements CartStore {
+
+    private static final String CART_KEY_PREFIX = "cart:guest:";
+    // 128 random bits, base64url without padding
+    private static final Pattern TOKEN = Pattern.compile("[A-Za-z0-9_-]{22}");
+
+    private static final String VERSION_FIELD = RedisCartStore.VERSION_FIELD;
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ = new DefaultRedisScript<>(
+            "local hash = redis.call('HGETALL', KEYS[1]) "
+                    + "if #hash > 0 then redis.call('EXPIRE', KEYS[1], ARGV[1]) end "
+                    + "return hash",
+            List.class);
+
+    private static final RedisScript<Long> ADD = new DefaultRedisScript<>(
+            "local quantity = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2]) "
+                    + "if quantity <= 0 then redis.call('HDEL', KEYS[1], ARGV[1]) end "
+                    + "redis.call('HINCRBY', KEYS[1], '" + VERSION_FIELD + "', 1) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[3]) "
+                    + "return quantity",
+            Long.class);
+
+    private static final RedisScript<Long> SET = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then return 0 end "
+                    + "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) "
+                    + "redis.call('HINCRBY', KEYS[1], '" + VERSION_FIELD + "', 1) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[3]) "
+                    + "return 1",
+            Long.class);
+
+    private static final RedisScript<Long> REMOVE = new DefaultRedisScript<>(
+            "if redis.call('HDEL', KEYS[1], ARGV[1]) == 0 then return 0 end "
+                    + "redis.call('HINCRBY', KEYS[1], '" + VERSION_FIELD + "', 1) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[2]) "
+                    + "return 1",
+            Long.class);
+
+    private static final RedisScript<Long> APPLY = new DefaultRedisScript<>(
+            "if tonumber(redis.call('HGET', KEYS[1], '" + VERSION_FIELD + "') or '0') ~= tonumber(ARGV[1]) then return 0 end "
+                    + "for i = 3, #ARGV, 2 do "
+                    + "  if tonumber(ARGV[i + 1]) <= 0 then redis.call('HDEL', KEYS[1], ARGV[i]) "
+                    + "  else redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+                    + "end "
+                    + "redis.call('HINCRBY', KEYS[1], '" + VERSION_FIELD + "', 1) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[2]) "
+                    + "return 1",
+            Long.class);
+
+    // Read and delete in one step, so a cart is merged at most once
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TAKE = new DefaultRedisScript<>(
+            "local hash = redis.call('HGETALL', KEYS[1]) "
+                    + "redis.call('DEL', KEYS[1]) "
+                    + "return hash",
+            List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${shop.cart.guest-ttl}")
+    private Duration ttl;
+
+    public GuestCartStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public String newToken() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public static boolean isValidToken(String token) {
+        return token != null && TOKEN.matcher(token).matches();
+    }
+
+    @Override
+    public Cart getCart(String token) {
+        List<?> flat = redisTemplate.execute(READ, List.of(key(token)), ttlSeconds());
+        return RedisCartStore.toCart(null, toMap(flat));
+    }
+
+    @Override
+    public int addQuantity(String token, Long productId, int delta) {
+        Long quantity = redisTemplate.execute(ADD, List.of(key(token)),
+                productId.toString(), Integer.toString(delta), ttlSeconds());
+        return quantity == null ? 0 : quantity.intValue();
+    }
+
+    @Override
+    public boolean setQuantity(String token, Long productId, int quantity) {
+        Long updated = redisTemplate.execute(SET, List.of(key(token)),
+                productId.toString(), Integer.toString(quantity), ttlSeconds());
+        return updated != null && updated == 1;
+    }
+
+    @Override
+    public void removeItem(String token, Long productId) {
+        redisTemplate.execute(REMOVE, List.of(key(token)), productId.toString(), ttlSeconds());
+    }
+
+    @Override
+    public boolean applyQuantities(String token, Cart basis, Map<Long, Integer> quantities) {
+        List<String> args = new ArrayList<>(2 + quantities.size() * 2);
+        args.add(Long.toString(basis.getRevision()));
+        args.add(ttlSeconds());
+        quantities.forEach((productId, quantity) -> {
+            args.add(productId.toString());
+            args.add(quantity.toString());
+        });
+        Long applied = redisTemplate.execute(APPLY, List.of(key(token)), args.toArray());
+        return applied != null && applied == 1;
+    }
+
+    /**
+     * Remove the guest cart and return its lines
+     *
+     * @return Quantity per product, empty if the cart does not exist
+     */
+    public Map<Long, Integer> take(String token) {
+        List<?> flat = redisTemplate.execute(TAKE, List.of(key(token)));
+        return RedisCartStore.quantities(toMap(flat));
+    }
+
+    /**
+     * Put lines taken with {@link #take} back, adding to anything written since
+     */
+    public void restore(String token, Map<Long, Integer> quantities) {
+        quantities.forEach((productId, quantity) -> addQuantity(token, productId, quantity));
+    }
+
+    private String ttlSeconds() {
+        return Long.toString(ttl.toSeconds());
+    }
+
+    // Scripts return a hash as alternating fields and values
+    private static Map<String, String> toMap(List<?> flat) {
+        Map<String, String> hash = new HashMap<>();
+        if (flat != null) {
+            for (int i = 0; i + 1 < flat.size(); i += 2) {
+                hash.put((String) flat.get(i), (String) flat.get(i + 1));
+            }
+        }
+        return hash;
+    }
+
+    private static String key(String token) {
+        return CART_KEY_PREFIX + token;
+    }
+}
@@ -0,0 +1,114 @@
+package com.shotx.shop.cart;
+
+import com.shotx.shop.model.Cart;
+import com.shotx.shop.model.CartItem;
+import com.shotx.shop.repository.CartRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Carts in the cart and cart_item tables, written through on every change. Before a change the
+ * cart is created with an upsert and read under a row lock, so one user's concurrent requests
+ * neither create duplicate carts nor overwrite each other's quantities; plain reads take no lock.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "shop.cart.store", havingValue = "jpa", matchIfMissing = true)
+public class JpaCartStore implements CartStore {
+
+    private final CartRepository cartRepository;
+
+    public JpaCartStore(CartRepository cartRepository) {
+        this.cartRepository = cartRepository;
+    }
+
+    // Locks the cart row, so concurrent changes to one cart cannot lose updates. The upsert goes
+    // first: it locks the existing row, or inserts one, instead of a locking read of a missing row
+    // taking a gap lock that two first requests then both wait on to insert
+    @Override
+    @Transactional
+    public Cart getCart(String username) {
+        cartRepository.insertIfAbsent(username, LocalDateTime.now());
+        return cartRepository.findByUsernameForUpdate(username);
+    }
+
+    // Only a user without a cart yet goes through the locking path, once
+    @Override
+    @Transactional
+    public Cart readCart(String username) {
+        Cart cart = cartRepository.findWithItemsByUsername(username);
+        return cart != null ? cart : getCart(username);
+    }
+
+    @Override
+    @Transactional
+    public int addQuantity(String username, Long productId, int delta) {
+        Cart cart = getCart(username);
+        Optional<CartItem> existing = find(cart, productId);
+        int quantity = existing.map(CartItem::getQuantity).orElse(0) + delta;
+        if (quantity <= 0) {
+            existing.ifPresent(item -> cart.getItems().remove(item));
+        } else if (existing.isPresent()) {
+            existing.get().setQuantity(quantity);
+        } else {
+            cart.getItems().add(new CartItem(productId, quantity, cart));
+        }
+        cart.setLastModified(LocalDateTime.now());
+        cartRepository.save(cart);
+        return quantity;
+    }
+
+    @Override
+    @Transactional
+    public boolean setQuantity(String username, Long productId, int quantity) {
+        Cart cart = getCart(username);
+        Optional<CartItem> existing = find(cart, productId);
+        existing.ifPresent(item -> {
+            item.setQuantity(quantity);
+            cart.setLastModified(LocalDateTime.now());
+        });
+        cartRepository.save(cart);
+        return existing.isPresent();
+    }
+
+    @Override
+    @Transactional
+    public void removeItem(String username, Long productId) {
+        Cart cart = getCart(username);
+        if (cart.getItems().removeIf(item -> item.getProductId().equals(productId))) {
+            cart.setLastModified(LocalDateTime.now());
+        }
+        cartRepository.save(cart);
+    }
+
+    // The basis is managed by the caller's transaction, which keeps the read and the write together
+    @Override
+    @Transactional
+    public boolean applyQuantities(String username, Cart basis, Map<Long, Integer> quantities) {
+        quantities.forEach((productId, quantity) -> {
+            Optional<CartItem> existing = find(basis, productId);
+            if (quantity <= 0) {
+                existing.ifPresent(item -> basis.getItems().remove(item));
+            } else if (existing.isPresent()) {
+                existing.get().setQuantity(quantity);
+            } else {
+                basis.getItems().add(new CartItem(productId, quantity, basis));
+            }
+        });
+        basis.setLastModified(LocalDateTime.now());
+        cartRepository.save(basis);
+        return true;
+    }
+
+    private static Optional<CartItem> find(Cart cart, Long productId) {
+        return cart.getItems().stream()
+                .filter(item -> item.getProductId().equals(productId))
+                .findFirst();
+    }
+}
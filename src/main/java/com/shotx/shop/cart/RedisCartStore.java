@@ -0,0 +1,348 @@
+package com.shotx.shop.cart;
+
+import com.shotx.shop.model.Cart;
+import com.shotx.shop.model.CartItem;
+import com.shotx.shop.repository.CartRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Carts as Redis hashes, one per user, mapping product id to quantity. Every change is a single
+ * atomic script (HINCRBY and friends) that also bumps the cart's version and marks the cart
+ * dirty; dirty carts are written back to the cart tables in batches on a fixed delay, so cart
+ * clicks no longer open database write transactions.
+ * <p>
+ * Redis is the source of truth while a cart is in it. A cart that is not in Redis yet (first
+ * use, or a Redis that lost its data) is loaded from the tables before it is changed, its version
+ * carrying on from the one last flushed. A cart row records the version it was written from, and a
+ * flush of an older version than that (a slower node, a retried batch) leaves the row alone. A
+ * change never recreates a hash that expired after it was loaded: the script reports it missing
+ * and the cart is loaded again, so its version cannot restart below the flushed one.
+ * <p>
+ * A cart hash expires after {@code shop.cart.sweep.max-idle} without changes, like its row, and
+ * is deleted with the row by {@link AbandonedCartSweeper} when nothing is left to flush.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "shop.cart.store", havingValue = "redis")
+public class RedisCartStore implements CartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisCartStore.class);
+
+    private static final String CART_KEY_PREFIX = "cart:user:";
+    private static final String DIRTY_KEY = "cart:dirty";
+    // Loads of a cart whose hash vanished again before it could be used
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+    // Hash fields that are not product ids; guest carts use the same layout
+    static final String VERSION_FIELD = "#v";
+    static final String ID_FIELD = "#id";
+
+    // Fill a cart from the database unless a concurrent request already did
+    private static final RedisScript<Long> LOAD = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end "
+                    + "redis.call('HSET', KEYS[1], unpack(ARGV, 2)) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[1]) "
+                    + "return 1",
+            Long.class);
+
+    // Drop a swept cart unless it changed after the version its deleted row was written from
+    private static final RedisScript<Long> EVICT = new DefaultRedisScript<>(
+            "local version = redis.call('HGET', KEYS[1], '" + VERSION_FIELD + "') "
+                    + "if version and tonumber(version) > tonumber(ARGV[1]) then return 0 end "
+                    + "return redis.call('DEL', KEYS[1])",
+            Long.class);
+
+    // Only while the cart is still in Redis, so a cart deleted meanwhile is not recreated
+    private static final RedisScript<Long> SET_ID = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end "
+                    + "redis.call('HSET', KEYS[1], '" + ID_FIELD + "', ARGV[1]) "
+                    + "return 1",
+            Long.class);
+
+    // The change scripts answer nil when the hash is gone, expired or swept since it was loaded
+    private static final RedisScript<Long> ADD = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return false end "
+                    + "local quantity = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2]) "
+                    + "if quantity <= 0 then redis.call('HDEL', KEYS[1], ARGV[1]) end "
+                    + "redis.call('HINCRBY', KEYS[1], '" + VERSION_FIELD + "', 1) "
+                    + "redis.call('SADD', KEYS[2], ARGV[3]) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[4]) "
+                    + "return quantity",
+            Long.class);
+
+    private static final RedisScript<Long> SET = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return false end "
+                    + "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then return 0 end "
+                    + "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) "
+                    + "redis.call('HINCRBY', KEYS[1], '" + VERSION_FIELD + "', 1) "
+                    + "redis.call('SADD', KEYS[2], ARGV[3]) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[4]) "
+                    + "return 1",
+            Long.class);
+
+    private static final RedisScript<Long> REMOVE = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return false end "
+                    + "if redis.call('HDEL', KEYS[1], ARGV[1]) == 0 then return 0 end "
+                    + "redis.call('HINCRBY', KEYS[1], '" + VERSION_FIELD + "', 1) "
+                    + "redis.call('SADD', KEYS[2], ARGV[2]) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[3]) "
+                    + "return 1",
+            Long.class);
+
+    // Several lines at once, only if the cart is still at the expected version
+    private static final RedisScript<Long> APPLY = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return false end "
+                    + "if tonumber(redis.call('HGET', KEYS[1], '" + VERSION_FIELD + "') or '0') ~= tonumber(ARGV[1]) then return 0 end "
+                    + "for i = 4, #ARGV, 2 do "
+                    + "  if tonumber(ARGV[i + 1]) <= 0 then redis.call('HDEL', KEYS[1], ARGV[i]) "
+                    + "  else redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+                    + "end "
+                    + "redis.call('HINCRBY', KEYS[1], '" + VERSION_FIELD + "', 1) "
+                    + "redis.call('SADD', KEYS[2], ARGV[2]) "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[3]) "
+                    + "return 1",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final CartRepository cartRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${shop.cart.flush-batch-size}")
+    private int flushBatchSize;
+
+    @Value("${shop.cart.sweep.max-idle}")
+    private Duration maxIdle;
+
+    public RedisCartStore(StringRedisTemplate redisTemplate,
+                          CartRepository cartRepository,
+                          PlatformTransactionManager transactionManager) {
+        this.redisTemplate = redisTemplate;
+        this.cartRepository = cartRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // A loaded hash always holds the version field, so an empty read means it is gone again
+    @Override
+    public Cart getCart(String username) {
+        for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+            Map<String, String> hash = redisTemplate.<String, String>opsForHash().entries(load(username));
+            if (!hash.isEmpty()) {
+                return toCart(username, hash);
+            }
+        }
+        throw disappeared(username);
+    }
+
+    @Override
+    public int addQuantity(String username, Long productId, int delta) {
+        return (int) change(username, ADD, List.of(productId.toString(), Integer.toString(delta), username, ttl()));
+    }
+
+    @Override
+    public boolean setQuantity(String username, Long productId, int quantity) {
+        return change(username, SET, List.of(productId.toString(), Integer.toString(quantity), username, ttl())) == 1;
+    }
+
+    @Override
+    public void removeItem(String username, Long productId) {
+        change(username, REMOVE, List.of(productId.toString(), username, ttl()));
+    }
+
+    @Override
+    public boolean applyQuantities(String username, Cart basis, Map<Long, Integer> quantities) {
+        List<String> args = new ArrayList<>(3 + quantities.size() * 2);
+        args.add(Long.toString(basis.getRevision()));
+        args.add(username);
+        args.add(ttl());
+        quantities.forEach((productId, quantity) -> {
+            args.add(productId.toString());
+            args.add(quantity.toString());
+        });
+        return change(username, APPLY, args) == 1;
+    }
+
+    // Load the cart if needed and run a change script on it. A hash that vanished in between is
+    // loaded again instead of being recreated from nothing, below the version of its row.
+    private long change(String username, RedisScript<Long> script, List<String> args) {
+        for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+            Long result = redisTemplate.execute(script, List.of(load(username), DIRTY_KEY), args.toArray());
+            if (result != null) {
+                return result;
+            }
+        }
+        throw disappeared(username);
+    }
+
+    private static IllegalStateException disappeared(String username) {
+        return new IllegalStateException("The cart of " + username + " kept disappearing while it was used");
+    }
+
+    /**
+     * Write dirty carts back to the database until none are left
+     */
+    @Scheduled(fixedDelayString = "${shop.cart.flush-interval-ms}")
+    public void flush() {
+        int flushed;
+        do {
+            flushed = flushBatch();
+        } while (flushed == flushBatchSize);
+    }
+
+    /**
+     * Delete the Redis carts of swept cart rows, except those changed after their row was last
+     * written; those are flushed into a new row instead
+     *
+     * @param flushedVersions Cart version each deleted row was written from, per username
+     */
+    void evictSwept(Map<String, Long> flushedVersions) {
+        flushedVersions.forEach((username, version) ->
+                redisTemplate.execute(EVICT, List.of(key(username)), version.toString()));
+    }
+
+    // Whatever is still dirty when the node stops
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private int flushBatch() {
+        List<String> usernames = redisTemplate.opsForSet().pop(DIRTY_KEY, flushBatchSize);
+        if (usernames == null || usernames.isEmpty()) {
+            return 0;
+        }
+        // Read after popping: a change made from here on marks the cart dirty again
+        Map<String, Map<String, String>> contents = new HashMap<>();
+        for (String username : usernames) {
+            contents.put(username, redisTemplate.<String, String>opsForHash().entries(key(username)));
+        }
+        try {
+            Map<String, Long> ids = transactionTemplate.execute(status -> write(contents));
+            if (ids != null) {
+                ids.forEach((username, id) -> redisTemplate.execute(SET_ID, List.of(key(username)), id.toString()));
+            }
+            log.debug("Flushed {} carts to the database", usernames.size());
+            return usernames.size();
+        } catch (RuntimeException e) {
+            log.warn("Could not flush {} carts, will retry: {}", usernames.size(), e.getMessage());
+            redisTemplate.opsForSet().add(DIRTY_KEY, usernames.toArray(String[]::new));
+            return 0;
+        }
+    }
+
+    // Make the cart rows match Redis, one cart per user. Each row is created if needed and claimed
+    // for the version read from Redis first; the claims hold the row locks, so the carts loaded
+    // afterwards are the latest committed ones.
+    private Map<String, Long> write(Map<String, Map<String, String>> contents) {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> claimed = new ArrayList<>(contents.size());
+        for (Map.Entry<String, Map<String, String>> entry : contents.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                // Gone from Redis in the meantime; the rows are all we have
+                continue;
+            }
+            long version = Long.parseLong(entry.getValue().getOrDefault(VERSION_FIELD, "0"));
+            cartRepository.insertIfAbsent(entry.getKey(), now);
+            if (cartRepository.claimFlush(entry.getKey(), version) == 1) {
+                claimed.add(entry.getKey());
+            }
+        }
+        if (claimed.isEmpty()) {
+            return Map.of();
+        }
+
+        List<Cart> changed = new ArrayList<>(claimed.size());
+        for (Cart cart : cartRepository.findWithItemsByUsernameIn(claimed)) {
+            Map<Long, Integer> quantities = quantities(contents.get(cart.getUsername()));
+            Iterator<CartItem> items = cart.getItems().iterator();
+            while (items.hasNext()) {
+                CartItem item = items.next();
+                Integer quantity = quantities.remove(item.getProductId());
+                if (quantity == null) {
+                    items.remove();
+                } else {
+                    item.setQuantity(quantity);
+                }
+            }
+            quantities.forEach((productId, quantity) -> cart.getItems().add(new CartItem(productId, quantity, cart)));
+            // Dirty means changed since the last flush, which is close enough for the cart sweeper
+            cart.setLastModified(now);
+            changed.add(cart);
+        }
+        Map<String, Long> ids = new HashMap<>();
+        cartRepository.saveAll(changed).forEach(cart -> ids.put(cart.getUsername(), cart.getId()));
+        return ids;
+    }
+
+    // Key of the user's cart, loaded from the database first if Redis does not have it
+    private String load(String username) {
+        String key = key(username);
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+            return key;
+        }
+        Cart cart = cartRepository.findWithItemsByUsername(username);
+        List<String> fields = new ArrayList<>();
+        fields.add(ttl());
+        fields.add(VERSION_FIELD);
+        fields.add(cart != null ? Long.toString(cart.getFlushedVersion()) : "0");
+        if (cart != null) {
+            fields.add(ID_FIELD);
+            fields.add(cart.getId().toString());
+            for (CartItem item : cart.getItems()) {
+                fields.add(item.getProductId().toString());
+                fields.add(item.getQuantity().toString());
+            }
+        }
+        redisTemplate.execute(LOAD, List.of(key), fields.toArray());
+        return key;
+    }
+
+    static Cart toCart(String username, Map<String, String> hash) {
+        Cart cart = new Cart(username);
+        cart.setRevision(Long.parseLong(hash.getOrDefault(VERSION_FIELD, "0")));
+        String id = hash.get(ID_FIELD);
+        if (id != null) {
+            cart.setId(Long.valueOf(id));
+        }
+        quantities(hash).entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(line -> cart.getItems().add(new CartItem(line.getKey(), line.getValue(), cart)));
+        return cart;
+    }
+
+    static Map<Long, Integer> quantities(Map<String, String> hash) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        hash.forEach((field, value) -> {
+            if (!field.startsWith("#")) {
+                quantities.put(Long.valueOf(field), Integer.valueOf(value));
+            }
+        });
+        return quantities;
+    }
+
+    private String ttl() {
+        return Long.toString(maxIdle.toSeconds());
+    }
+
+    private static String key(String username) {
+        return CART_KEY_PREFIX + username;
+    }
+}
@@ -0,0 +1,35 @@
+package com.shotx.shop.config;
+
+import com.shotx.shop.cache.CatalogVersion;
+import com.shotx.shop.filter.CatalogETagInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class HttpCacheConfig implements WebMvcConfigurer {
+
+    private final CatalogVersion catalogVersion;
+
+    @Value("${shop.http.cache-control.products}")
+    private String productsCacheControl;
+
+    @Value("${shop.http.cache-control.categories}")
+    private String categoriesCacheControl;
+
+    public HttpCacheConfig(CatalogVersion catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // ETag + Cache-Control on catalog reads, each endpoint group with its own Cache-Control.
+        // Products carry their stock, categories do not, so sales leave category ETags alone.
+        registry.addInterceptor(new CatalogETagInterceptor(catalogVersion::current, productsCacheControl))
+                .addPathPatterns("/products", "/products/**")
+                .excludePathPatterns("/products/export", "/products/stream");
+        registry.addInterceptor(new CatalogETagInterceptor(catalogVersion::structure, categoriesCacheControl))
+                .addPathPatterns("/categories", "/categories/**");
+    }
+}
@@ -44,6 +44,8 @@ public class SecurityConfig {
                 HttpMethod.OPTIONS.name()
         ));
         configuration.setAllowedHeaders(Collections.singletonList("*"));
+        // Guest cart token issued by the cart endpoints
+        configuration.setExposedHeaders(Collections.singletonList("X-Cart-Token"));
         configuration.setAllowCredentials(true); // if you need credentials (cookies, auth headers, etc.)
         configuration.setMaxAge(3600L); // 1 hour cache for preflight requests
 
@@ -61,12 +63,20 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         // Public endpoints that don't require authentication
                         .requestMatchers("/auth/**", "/h2-console/**", "/uploads/**").permitAll()
-                        // Allow product and category read access without authentication
+                        // Cache statistics and other metrics are for admins only
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+                        // Allow product, category and catalog feed read access without authentication
                         .requestMatchers(request ->
                                 (request.getMethod().equals("GET") &&
                                         (request.getRequestURI().startsWith("/products") ||
-                                                request.getRequestURI().startsWith("/categories")))
+                                                request.getRequestURI().startsWith("/categories") ||
+                                                request.getRequestURI().startsWith("/catalog/changes")))
                         ).permitAll()
+                        // The POST variant of the batch lookup is a read as well
+                        .requestMatchers(HttpMethod.POST, "/products/batch").permitAll()
+                        // Anonymous shoppers use guest carts; signed-in users still get their own
+                        .requestMatchers("/cart", "/cart/**").permitAll()
                         // Other endpoints require authentication
                         .anyRequest().authenticated()
                 )
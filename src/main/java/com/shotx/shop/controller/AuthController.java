@@ -1,11 +1,15 @@
 package com.shotx.shop.controller;
 
+import com.shotx.shop.cart.GuestCartStore;
 import com.shotx.shop.model.RegisterRequest;
 import com.shotx.shop.model.UserAuthRequest;
 import com.shotx.shop.model.Users;
 import com.shotx.shop.service.AuthService;
+import com.shotx.shop.service.CartService;
 import com.shotx.shop.service.UserService;
 import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -17,13 +21,18 @@ import org.springframework.web.bind.annotation.*;
 @Validated
 public class AuthController {
 
+    private static final Logger log = LoggerFactory.getLogger(AuthController.class);
+
     private final UserService userService;
 
     private final AuthService authService;
 
-    public AuthController(UserService userService, AuthService authService) {
+    private final CartService cartService;
+
+    public AuthController(UserService userService, AuthService authService, CartService cartService) {
         this.userService = userService;
         this.authService = authService;
+        this.cartService = cartService;
     }
 
     @PostMapping("/register")
@@ -32,12 +41,22 @@ public class AuthController {
         return ResponseEntity.ok().build();
     }
 
-    // Endpoint to login a user and return an auth token
+    // Endpoint to login a user and return an auth token.
+    // A guest cart passed in X-Cart-Token is merged into the user's cart.
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody UserAuthRequest userAuthRequest) {
+    public ResponseEntity<?> login(@RequestBody UserAuthRequest userAuthRequest,
+                                   @RequestHeader(value = CartController.CART_TOKEN_HEADER, required = false) String cartToken) {
         Users user = userService.authenticate(userAuthRequest.getUsername(), userAuthRequest.getPassword());
         if (user != null) {
             String token = authService.generateToken(user);
+            if (GuestCartStore.isValidToken(cartToken)) {
+                try {
+                    cartService.mergeGuestCart(cartToken, user.getUsername());
+                } catch (RuntimeException e) {
+                    // The guest cart is kept, a failed merge must not fail the login
+                    log.warn("Could not merge guest cart into the cart of {}: {}", user.getUsername(), e.getMessage());
+                }
+            }
             return ResponseEntity.ok(token);
         }
         return ResponseEntity.badRequest().body("Invalid credentials");
@@ -1,33 +1,70 @@
 package com.shotx.shop.controller;
 
+import com.shotx.shop.cart.CartOwner;
+import com.shotx.shop.cart.GuestCartStore;
 import com.shotx.shop.model.Cart;
+import com.shotx.shop.model.CartItem;
+import com.shotx.shop.model.CartItemOperation;
 import com.shotx.shop.service.CartService;
+import com.shotx.shop.service.ProductService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Signed-in users work on their own cart. Anonymous callers get a guest cart named by the
+// X-Cart-Token header; when it is missing or unknown a new token is issued in the response header.
 @RestController
 @RequestMapping("/cart")
 public class CartController {
 
+    public static final String CART_TOKEN_HEADER = "X-Cart-Token";
+
+    private static final int MAX_OPERATIONS = 200;
+
     private final CartService cartService;
+    private final ProductService productService;
 
-    public CartController(CartService cartService) {
+    public CartController(CartService cartService, ProductService productService) {
         this.cartService = cartService;
+        this.productService = productService;
     }
 
-    // Get current user's cart
+    // Get current user's cart.
+    // expand=products returns {"cart": ..., "products": {"items": [...], "missing": [...]}} resolved in one query.
     @GetMapping
-    public ResponseEntity<Cart> getCart(Authentication authentication) {
-        String username = authentication.getName();
-        Cart cart = cartService.getOrCreateCart(username);
-        return ResponseEntity.ok(cart);
+    public ResponseEntity<?> getCart(Authentication authentication,
+                                     @RequestHeader(value = CART_TOKEN_HEADER, required = false) String cartToken,
+                                     @RequestParam(required = false) String expand) {
+        CartOwner owner = ownerOf(authentication, cartToken);
+        Cart cart = cartService.getCart(owner);
+        if (!"products".equals(expand)) {
+            return ok(owner, cart);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("cart", cart);
+        response.put("products", productService.getProductBatch(
+                cart.getItems().stream().map(CartItem::getProductId).toList()));
+        return ok(owner, response);
+    }
+
+    // Cart priced at current catalog prices: line prices, subtotal, item count and stock availability.
+    @GetMapping("/summary")
+    public ResponseEntity<?> getCartSummary(Authentication authentication,
+                                            @RequestHeader(value = CART_TOKEN_HEADER, required = false) String cartToken) {
+        CartOwner owner = ownerOf(authentication, cartToken);
+        return ok(owner, cartService.getPricedCart(owner));
     }
 
     // Add or update a cart item.
     @PostMapping("/item")
     public ResponseEntity<?> addItemToCart(
             Authentication authentication,
+            @RequestHeader(value = CART_TOKEN_HEADER, required = false) String cartToken,
             @RequestParam Long productId,
             @RequestParam int quantity) {
 
@@ -37,10 +74,10 @@ public class CartController {
                     .body("Quantity must be at least 1");
         }
 
-        String username = authentication.getName();
+        CartOwner owner = ownerOf(authentication, cartToken);
         try {
-            Cart cart = cartService.addOrUpdateCartItem(username, productId, quantity);
-            return ResponseEntity.ok(cart);
+            Cart cart = cartService.addOrUpdateCartItem(owner, productId, quantity);
+            return ok(owner, cart);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
@@ -48,18 +85,20 @@ public class CartController {
 
     // Remove an item from the cart
     @DeleteMapping("/item")
-    public ResponseEntity<Cart> removeItemFromCart(
+    public ResponseEntity<?> removeItemFromCart(
             Authentication authentication,
+            @RequestHeader(value = CART_TOKEN_HEADER, required = false) String cartToken,
             @RequestParam Long productId) {
-        String username = authentication.getName();
-        Cart cart = cartService.removeCartItem(username, productId);
-        return ResponseEntity.ok(cart);
+        CartOwner owner = ownerOf(authentication, cartToken);
+        Cart cart = cartService.removeCartItem(owner, productId);
+        return ok(owner, cart);
     }
 
     // Optionally, add an endpoint to update quantity
     @PutMapping("/item")
     public ResponseEntity<?> updateCartItem(
             Authentication authentication,
+            @RequestHeader(value = CART_TOKEN_HEADER, required = false) String cartToken,
             @RequestParam Long productId,
             @RequestParam int quantity) {
 
@@ -69,12 +108,49 @@ public class CartController {
                     .body("Quantity must be at least 1");
         }
 
-        String username = authentication.getName();
+        CartOwner owner = ownerOf(authentication, cartToken);
+        try {
+            Cart cart = cartService.updateCartItem(owner, productId, quantity);
+            return ok(owner, cart);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Apply several item changes in one call: a JSON array of {productId, quantity, op} with op ADD, SET
+    // or REMOVE, applied in order. Stock is checked once for all lines; on any error nothing changes.
+    @PatchMapping("/items")
+    public ResponseEntity<?> updateCartItems(
+            Authentication authentication,
+            @RequestHeader(value = CART_TOKEN_HEADER, required = false) String cartToken,
+            @RequestBody List<CartItemOperation> operations) {
+
+        if (operations.size() > MAX_OPERATIONS) {
+            return ResponseEntity.badRequest().body("At most " + MAX_OPERATIONS + " operations per request");
+        }
+
+        CartOwner owner = ownerOf(authentication, cartToken);
         try {
-            Cart cart = cartService.updateCartItem(username, productId, quantity);
-            return ResponseEntity.ok(cart);
+            return ok(owner, cartService.applyOperations(owner, operations));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    private CartOwner ownerOf(Authentication authentication, String cartToken) {
+        if (authentication != null) {
+            return CartOwner.user(authentication.getName());
+        }
+        return CartOwner.guest(GuestCartStore.isValidToken(cartToken) ? cartToken : cartService.newGuestCartToken());
+    }
+
+    // Guests always get their token back, so a newly issued one reaches the client
+    private static ResponseEntity<?> ok(CartOwner owner, Object body) {
+        if (!owner.guest()) {
+            return ResponseEntity.ok(body);
         }
+        return ResponseEntity.ok().header(CART_TOKEN_HEADER, owner.id()).body(body);
     }
-}
\ No newline at end of file
+}
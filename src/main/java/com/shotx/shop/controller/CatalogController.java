@@ -0,0 +1,36 @@
+package com.shotx.shop.controller;
+
+import com.shotx.shop.service.CatalogChangeService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/catalog")
+public class CatalogController {
+
+    private static final int MAX_CHANGES = 5000;
+
+    private final CatalogChangeService catalogChangeService;
+
+    public CatalogController(CatalogChangeService catalogChangeService) {
+        this.catalogChangeService = catalogChangeService;
+    }
+
+    // GET catalog rows changed since a version - public access. Without since, pages through the whole catalog;
+    // pass the returned "next" back as since until hasMore is false. Stock levels come from /products/stream.
+    @GetMapping("/changes")
+    public ResponseEntity<?> getChanges(@RequestParam(required = false) String since,
+                                        @RequestParam(defaultValue = "500") int limit) {
+        if (limit < 1 || limit > MAX_CHANGES) {
+            return ResponseEntity.badRequest().body("limit must be between 1 and " + MAX_CHANGES);
+        }
+        try {
+            return ResponseEntity.ok(catalogChangeService.getChanges(since, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -7,29 +7,50 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/categories")
 public class CategoryController {
 
+    private static final List<String> CATEGORY_FIELDS = List.of("id", "name");
+
     private final CategoryService categoryService;
 
     public CategoryController(CategoryService categoryService) {
         this.categoryService = categoryService;
     }
 
-    // GET all categories
+    // GET all categories. fields= (id, name) limits the properties returned.
     @GetMapping
-    public ResponseEntity<List<Category>> getAllCategories() {
-        return ResponseEntity.ok(categoryService.getAllCategories());
+    public ResponseEntity<?> getAllCategories(@RequestParam(required = false) String fields) {
+        List<Category> categories = categoryService.getAllCategories();
+        if (fields == null) {
+            return ResponseEntity.ok(categories);
+        }
+        try {
+            List<String> selected = parseFields(fields);
+            return ResponseEntity.ok(categories.stream().map(category -> select(category, selected)).toList());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
-    // GET a category by id
+    // GET a category by id, fields= as above
     @GetMapping("/{id}")
-    public ResponseEntity<?> getCategoryById(@PathVariable Long id) {
+    public ResponseEntity<?> getCategoryById(@PathVariable Long id,
+                                             @RequestParam(required = false) String fields) {
+        List<String> selected;
+        try {
+            selected = fields == null ? null : parseFields(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
         return categoryService.getCategoryById(id)
-                .map(ResponseEntity::ok)
+                .<ResponseEntity<?>>map(category -> ResponseEntity.ok(selected == null ? category : select(category, selected)))
                 .orElse(ResponseEntity.notFound().build());
     }
 
@@ -54,4 +75,30 @@ public class CategoryController {
         categoryService.deleteCategory(id);
         return ResponseEntity.noContent().build();
     }
+
+    // Categories are served whole from the catalog cache, so fields only trims the output
+    private static List<String> parseFields(String fields) {
+        List<String> selected = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .distinct()
+                .toList();
+        for (String field : selected) {
+            if (!CATEGORY_FIELDS.contains(field)) {
+                throw new IllegalArgumentException("Unknown field: " + field);
+            }
+        }
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("fields must name at least one property");
+        }
+        return selected;
+    }
+
+    private static Map<String, Object> select(Category category, List<String> fields) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String field : fields) {
+            values.put(field, "id".equals(field) ? category.getId() : category.getName());
+        }
+        return values;
+    }
 }
@@ -3,11 +3,13 @@ package com.shotx.shop.controller;
 import com.shotx.shop.model.Order;
 import com.shotx.shop.model.OrderItem;
 import com.shotx.shop.service.OrderService;
+import com.shotx.shop.service.ProductService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -16,9 +18,11 @@ import java.util.Map;
 public class OrderController {
 
     private final OrderService orderService;
+    private final ProductService productService;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, ProductService productService) {
         this.orderService = orderService;
+        this.productService = productService;
     }
 
     // Endpoint to place an order.
@@ -38,19 +42,38 @@ public class OrderController {
     }
 
     // Endpoint to get all orders for the authenticated user.
+    // expand=products adds the products of every order, resolved in one query.
     @GetMapping
-    public ResponseEntity<List<Order>> getUserOrders(Authentication authentication) {
+    public ResponseEntity<?> getUserOrders(Authentication authentication,
+                                           @RequestParam(required = false) String expand) {
         String username = authentication.getName();
         List<Order> orders = orderService.getOrdersForUser(username);
-        return ResponseEntity.ok(orders);
+        if (!"products".equals(expand)) {
+            return ResponseEntity.ok(orders);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("orders", orders);
+        response.put("products", productService.getProductBatch(orders.stream()
+                .flatMap(order -> order.getItems().stream())
+                .map(OrderItem::getProductId)
+                .toList()));
+        return ResponseEntity.ok(response);
     }
 
-    // Get a specific order by ID
+    // Get a specific order by ID, expand=products as above
     @GetMapping("/{id}")
-    public ResponseEntity<Order> getOrderById(@PathVariable Long id, Authentication authentication) {
+    public ResponseEntity<?> getOrderById(@PathVariable Long id, Authentication authentication,
+                                          @RequestParam(required = false) String expand) {
         String username = authentication.getName();
         Order order = orderService.getOrderById(id, username);
-        return ResponseEntity.ok(order);
+        if (!"products".equals(expand)) {
+            return ResponseEntity.ok(order);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("order", order);
+        response.put("products", productService.getProductBatch(
+                order.getItems().stream().map(OrderItem::getProductId).toList()));
+        return ResponseEntity.ok(response);
     }
 
     // Update order payment status - changed from @PatchMapping to @PostMapping
@@ -1,55 +1,294 @@
 package com.shotx.shop.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shotx.shop.model.CatalogFileFormat;
 import com.shotx.shop.model.Product;
+import com.shotx.shop.model.ProductFieldSet;
+import com.shotx.shop.model.ProductFilter;
 import com.shotx.shop.model.ProductImage;
+import com.shotx.shop.model.ProductPage;
+import com.shotx.shop.model.ProductSort;
+import com.shotx.shop.search.Suggestion;
+import com.shotx.shop.service.CatalogExportService;
+import com.shotx.shop.service.ProductImportService;
 import com.shotx.shop.service.ProductService;
+import com.shotx.shop.stream.ProductLevel;
+import com.shotx.shop.stream.ProductLevelStream;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/products")
 public class ProductController {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SUGGESTIONS = 20;
+    private static final int MAX_IMPORT_BATCH_SIZE = 5000;
+    private static final int MAX_BATCH_IDS = 1000;
+    private static final int MAX_STREAM_IDS = 100;
+
     private final ProductService productService;
+    private final CatalogExportService catalogExportService;
+    private final ProductImportService productImportService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ProductLevelStream productLevelStream;
+
+    @Value("${shop.export.timeout}")
+    private Duration exportTimeout;
 
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService,
+                             CatalogExportService catalogExportService,
+                             ProductImportService productImportService,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             ProductLevelStream productLevelStream) {
         this.productService = productService;
+        this.catalogExportService = catalogExportService;
+        this.productImportService = productImportService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.productLevelStream = productLevelStream;
     }
 
-    // GET all products - public access
+    // GET all products - public access. Always a keyset page with a next cursor; without limit
+    // the page holds DEFAULT_PAGE_SIZE products. Price and stock filters (minPrice, maxPrice, inStock)
+    // are answered from the in-memory filter index and sort by id or price.
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts() {
-        return ResponseEntity.ok(productService.getAllProducts());
+    public ResponseEntity<?> getAllProducts(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(defaultValue = "asc") String order,
+            @RequestParam(required = false) List<Long> categories,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "false") boolean inStock,
+            @RequestParam(required = false) String fields) throws IOException {
+
+        try {
+            ProductFilter filter = new ProductFilter(categories, minPrice, maxPrice, inStock);
+            if (fields != null) {
+                if (filter.hasPriceOrStock()) {
+                    throw new IllegalArgumentException("fields cannot be combined with price or stock filters");
+                }
+                ProductFieldSet fieldSet = ProductFieldSet.parse(fields, false);
+                ProductSort productSort = ProductSort.fromParam(sort);
+                boolean descending = isDescending(order);
+                int size = pageSize(limit);
+                return fieldsResponse(fieldSet, () -> productService.getProductFieldsPage(
+                        filter.getCategoryIds(), productSort, descending, after, size, fieldSet));
+            }
+            if (filter.hasPriceOrStock()) {
+                return ResponseEntity.ok(productService.getFilteredPage(
+                        filter, ProductSort.fromParam(sort), isDescending(order), after, pageSize(limit)));
+            }
+            return ResponseEntity.ok(productService.getProductPage(
+                    filter.getCategoryIds(), ProductSort.fromParam(sort), isDescending(order), after, pageSize(limit)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
-    // Search products - public access
+    // Search products - public access. Paginated the same way as the listing, with the same
+    // default page size, sort defaults to relevance. facets=true adds product counts per category.
     @GetMapping("/search")
-    public ResponseEntity<List<Product>> searchProducts(
+    public ResponseEntity<?> searchProducts(
             @RequestParam(required = false) String query,
-            @RequestParam(required = false) List<Long> categories) {
+            @RequestParam(required = false) List<Long> categories,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "relevance") String sort,
+            @RequestParam(defaultValue = "desc") String order,
+            @RequestParam(defaultValue = "false") boolean facets) {
 
-        if (categories != null && !categories.isEmpty()) {
-            return ResponseEntity.ok(productService.searchProductsByCategories(query, categories));
-        } else {
-            return ResponseEntity.ok(productService.searchProducts(query));
+        ProductPage page;
+        try {
+            page = productService.searchProductPage(
+                    query, categories, ProductSort.fromParam(sort), isDescending(order), after, pageSize(limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         }
+        return ResponseEntity.ok(facets ? page.withFacets(productService.getCategoryFacets(query)) : page);
+    }
+
+    // Typeahead completions for the search box - public access
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Suggestion>> suggest(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(productService.suggest(prefix, Math.min(limit, MAX_SUGGESTIONS)));
     }
 
-    // GET product by id - public access
+    // Many products by id in one call - public access. Returned in request order, unknown ids in "missing".
+    @GetMapping("/batch")
+    public ResponseEntity<?> getProductBatch(@RequestParam List<Long> ids) {
+        return productBatch(ids);
+    }
+
+    // Same as above with the ids as a JSON array body, for lists too long for a query string
+    @PostMapping("/batch")
+    public ResponseEntity<?> postProductBatch(@RequestBody List<Long> ids) {
+        return productBatch(ids);
+    }
+
+    // Live stock and price of some products as server-sent events - public access.
+    // Sends the current levels first, then a "levels" event with the products that changed.
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamProductLevels(@RequestParam List<Long> ids) {
+        Set<Long> productIds = ids.stream().filter(Objects::nonNull).collect(Collectors.toCollection(LinkedHashSet::new));
+        // Between 1 and MAX_STREAM_IDS products; an emitter must be the body, so no message
+        if (productIds.isEmpty() || productIds.size() > MAX_STREAM_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Read once subscribed, so a change committed in between is not missed
+        return ResponseEntity.ok(productLevelStream.subscribe(productIds, () ->
+                productService.getSummaries(List.copyOf(productIds)).stream()
+                        .map(product -> new ProductLevel(product.getId(), product.getStock(), product.getPrice()))
+                        .toList()));
+    }
+
+    private ResponseEntity<?> productBatch(List<Long> ids) {
+        if (ids.size() > MAX_BATCH_IDS) {
+            return ResponseEntity.badRequest().body("At most " + MAX_BATCH_IDS + " ids per batch");
+        }
+        return ResponseEntity.ok(productService.getProductBatch(ids));
+    }
+
+    // Full catalog export for feeds (only ADMIN allowed). Streamed row by row, gzip=true compresses it.
+    // Runs under its own async timeout instead of the application-wide one.
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/export")
+    public ResponseEntity<?> exportProducts(
+            @RequestParam(defaultValue = "jsonl") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+
+        CatalogFileFormat exportFormat;
+        try {
+            exportFormat = CatalogFileFormat.fromParam(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 8192);
+                catalogExportService.export(exportFormat, compressed);
+                compressed.finish();
+            } else {
+                catalogExportService.export(exportFormat, out);
+            }
+        };
+
+        // The streaming body starts async processing on the request's async wrapper, so replacing
+        // the wrapper here gives this request alone the longer timeout
+        AsyncWebRequest asyncRequest = WebAsyncUtils.createAsyncWebRequest(request, response);
+        asyncRequest.setTimeout(exportTimeout.toMillis());
+        WebAsyncUtils.getAsyncManager(request).setAsyncWebRequest(asyncRequest);
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"catalog." + exportFormat.getExtension() + "\"");
+        if (gzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return builder.body(body);
+    }
+
+    // Bulk import from a CSV or JSON Lines request body (only ADMIN allowed).
+    // batchSize overrides the configured rows per transaction; batchSize=1 gives the per-row baseline.
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/import")
+    public ResponseEntity<?> importProducts(
+            @RequestParam(defaultValue = "jsonl") String format,
+            @RequestParam(required = false) Integer batchSize,
+            InputStream body) throws IOException {
+
+        try {
+            if (batchSize != null && (batchSize < 1 || batchSize > MAX_IMPORT_BATCH_SIZE)) {
+                throw new IllegalArgumentException("Batch size must be between 1 and " + MAX_IMPORT_BATCH_SIZE);
+            }
+            return ResponseEntity.ok(productImportService.importProducts(
+                    CatalogFileFormat.fromParam(format), body, batchSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // GET product by id - public access. fields= selects the properties, images included.
     @GetMapping("/{id}")
-    public ResponseEntity<?> getProductById(@PathVariable Long id) {
+    public ResponseEntity<?> getProductById(@PathVariable Long id,
+                                            @RequestParam(required = false) String fields) throws IOException {
+        if (fields != null) {
+            ProductFieldSet fieldSet;
+            try {
+                fieldSet = ProductFieldSet.parse(fields, true);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+            Optional<Map<String, Object>> product = productService.getProductFields(id, fieldSet);
+            if (product.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            return fieldsResponse(fieldSet, product::get);
+        }
         return productService.getProductById(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // Serialized here so the payload size of each field set can be recorded next to its latency
+    private ResponseEntity<byte[]> fieldsResponse(ProductFieldSet fields, Supplier<Object> body) throws IOException {
+        long start = System.nanoTime();
+        byte[] json = objectMapper.writeValueAsBytes(body.get());
+        Timer.builder("catalog.fields.latency")
+                .description("Load and serialization time of product responses by fields= selection")
+                .tag("fields", fields.tag())
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("catalog.fields.payload")
+                .description("Payload size of product responses by fields= selection")
+                .baseUnit("bytes")
+                .tag("fields", fields.tag())
+                .register(meterRegistry)
+                .record(json.length);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
+    }
+
     // POST create a new product (only ADMIN allowed)
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping
@@ -124,4 +363,24 @@ public class ProductController {
 
         return ResponseEntity.ok(productService.reorderProductImages(productId, imageIds));
     }
-}
\ No newline at end of file
+
+    private static int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    private static boolean isDescending(String order) {
+        if ("desc".equalsIgnoreCase(order)) {
+            return true;
+        }
+        if ("asc".equalsIgnoreCase(order)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Order must be asc or desc");
+    }
+}
@@ -0,0 +1,30 @@
+package com.shotx.shop.event;
+
+/**
+ * Published by {@link com.shotx.shop.service.CategoryService} whenever a category is
+ * created, renamed or deleted.
+ */
+public class CategoryChangedEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Long categoryId;
+    private final Type type;
+
+    public CategoryChangedEvent(Long categoryId, Type type) {
+        this.categoryId = categoryId;
+        this.type = type;
+    }
+
+    public Long getCategoryId() {
+        return categoryId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+}
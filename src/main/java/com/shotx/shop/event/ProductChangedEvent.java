@@ -0,0 +1,32 @@
+package com.shotx.shop.event;
+
+/**
+ * Published by {@link com.shotx.shop.service.ProductService} whenever a product is
+ * created, updated or deleted, so in-memory catalog structures can follow the database.
+ */
+public class ProductChangedEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        // Only the stock level changed, as on checkout
+        STOCK,
+        DELETED
+    }
+
+    private final Long productId;
+    private final Type type;
+
+    public ProductChangedEvent(Long productId, Type type) {
+        this.productId = productId;
+        this.type = type;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+}
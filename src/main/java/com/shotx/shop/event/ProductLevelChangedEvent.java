@@ -0,0 +1,32 @@
+package com.shotx.shop.event;
+
+import java.math.BigDecimal;
+
+/**
+ * Published by {@link com.shotx.shop.service.ProductService} when a product's stock or price
+ * may have changed, carrying the new values so live product pages can be updated without a read.
+ */
+public class ProductLevelChangedEvent {
+
+    private final Long productId;
+    private final Integer stock;
+    private final BigDecimal price;
+
+    public ProductLevelChangedEvent(Long productId, Integer stock, BigDecimal price) {
+        this.productId = productId;
+        this.stock = stock;
+        this.price = price;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+}
@@ -0,0 +1,20 @@
+package com.shotx.shop.event;
+
+import java.util.List;
+
+/**
+ * Published by {@link com.shotx.shop.service.ProductImportService} once per committed
+ * import batch, in place of one {@link ProductChangedEvent} per product.
+ */
+public class ProductsImportedEvent {
+
+    private final List<Long> productIds;
+
+    public ProductsImportedEvent(List<Long> productIds) {
+        this.productIds = productIds;
+    }
+
+    public List<Long> getProductIds() {
+        return productIds;
+    }
+}
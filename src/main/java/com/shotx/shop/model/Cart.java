@@ -1,7 +1,9 @@
 package com.shotx.shop.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,11 +22,24 @@ public class Cart {
     @JsonManagedReference // This marks the forward part of the reference – the parent side.
     private List<CartItem> items = new ArrayList<>();
 
+    // Last change to the cart or its items; idle carts are deleted by the cart sweeper
+    private LocalDateTime lastModified;
+
+    // Redis cart version the row was last written from, so an older flush cannot overwrite it
+    @JsonIgnore
+    private long flushedVersion;
+
+    // Revision of the cart in the cart store, for optimistic updates; not stored in the table
+    @Transient
+    @JsonIgnore
+    private long revision;
+
     // Constructors
     public Cart() {}
 
     public Cart(String username) {
         this.username = username;
+        this.lastModified = LocalDateTime.now();
     }
 
     // Getters and Setters
@@ -46,4 +61,22 @@ public class Cart {
     public void setItems(List<CartItem> items) {
         this.items = items;
     }
+    public LocalDateTime getLastModified() {
+        return lastModified;
+    }
+    public void setLastModified(LocalDateTime lastModified) {
+        this.lastModified = lastModified;
+    }
+    public long getFlushedVersion() {
+        return flushedVersion;
+    }
+    public void setFlushedVersion(long flushedVersion) {
+        this.flushedVersion = flushedVersion;
+    }
+    public long getRevision() {
+        return revision;
+    }
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
 }
@@ -0,0 +1,23 @@
+package com.shotx.shop.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One change in a bulk cart update. ADD adds to the quantity in the cart, SET replaces it
+ * (adding the line if needed) and REMOVE drops the line; quantity is ignored for REMOVE.
+ */
+@Setter
+@Getter
+public class CartItemOperation {
+
+    public enum Op {
+        ADD,
+        SET,
+        REMOVE
+    }
+
+    private Long productId;
+    private Integer quantity;
+    private Op op;
+}
@@ -0,0 +1,53 @@
+package com.shotx.shop.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of the catalog delta feed: the rows written and deleted after the requested
+ * position, in catalog version order. {@code next} is passed back as {@code since} to read
+ * the following page, or to poll for later changes once {@code hasMore} is false. Products come
+ * without stock, which is streamed by {@code /products/stream}.
+ */
+@Getter
+public class CatalogChanges {
+
+    private final List<Category> categories;
+    private final List<ProductSummary> products;
+    private final List<ImageChange> images;
+    private final List<Tombstone> deleted;
+    private final String next;
+    private final boolean hasMore;
+
+    public CatalogChanges(List<Category> categories, List<ProductSummary> products, List<ImageChange> images,
+                          List<Tombstone> deleted, String next, boolean hasMore) {
+        this.categories = categories;
+        this.products = products;
+        this.images = images;
+        this.deleted = deleted;
+        this.next = next;
+        this.hasMore = hasMore;
+    }
+
+    public record ImageChange(Long id, Long productId, String imageUrl,
+                              @JsonProperty("isPrimary") boolean primary, Integer displayOrder) {
+
+        public static ImageChange from(ProductImage image) {
+            // Reading the id does not initialize the lazy product
+            return new ImageChange(image.getId(), image.getProduct().getId(), image.getImageUrl(),
+                    image.isIsPrimary(), image.getDisplayOrder());
+        }
+    }
+
+    /**
+     * A deleted row
+     *
+     * @param sequence Position of the deletion in the tombstone log
+     * @param type     Table the row was deleted from
+     * @param id       ID of the deleted row
+     * @param version  Catalog version of the deletion
+     */
+    public record Tombstone(long sequence, CatalogEntityType type, long id, long version) {}
+}
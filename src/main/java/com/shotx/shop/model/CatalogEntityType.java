@@ -0,0 +1,10 @@
+package com.shotx.shop.model;
+
+/**
+ * Catalog tables tracked by the delta feed
+ */
+public enum CatalogEntityType {
+    CATEGORY,
+    PRODUCT,
+    PRODUCT_IMAGE
+}
@@ -0,0 +1,35 @@
+package com.shotx.shop.model;
+
+import java.util.Locale;
+
+/**
+ * File formats for catalog export and bulk import
+ */
+public enum CatalogFileFormat {
+    JSONL("application/x-ndjson", "jsonl"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    CatalogFileFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public static CatalogFileFormat fromParam(String value) {
+        try {
+            return CatalogFileFormat.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format: " + value);
+        }
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,32 @@
+package com.shotx.shop.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Catalog entity whose rows carry the catalog version of their last write, stamped by
+ * {@link com.shotx.shop.sync.CatalogChangeListener}
+ */
+public interface CatalogVersioned {
+
+    Long getId();
+
+    @JsonIgnore
+    CatalogEntityType getCatalogEntityType();
+
+    long getUpdatedVersion();
+
+    void setUpdatedVersion(long updatedVersion);
+
+    /**
+     * Remember the state the feed serves, after a load or a write
+     */
+    default void markFeedState() {}
+
+    /**
+     * @return Whether a pending update changes what the feed serves; only such updates take a
+     *         new catalog version
+     */
+    default boolean hasFeedChanges() {
+        return true;
+    }
+}
@@ -1,13 +1,23 @@
 package com.shotx.shop.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.shotx.shop.sync.CatalogChangeListener;
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.validation.constraints.NotBlank;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
-public class Category {
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(CatalogChangeListener.class)
+public class Category implements CatalogVersioned {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -16,6 +26,11 @@ public class Category {
     @NotBlank(message = "Category name is required")
     private String name;
 
+    // Catalog version of the last write, for the delta feed
+    @Column(nullable = false)
+    @JsonIgnore
+    private long updatedVersion;
+
     // Constructors
     public Category() {
     }
@@ -37,4 +52,19 @@ public class Category {
     public void setName(String name) {
         this.name = name;
     }
+
+    @Override
+    public CatalogEntityType getCatalogEntityType() {
+        return CatalogEntityType.CATEGORY;
+    }
+
+    @Override
+    public long getUpdatedVersion() {
+        return updatedVersion;
+    }
+
+    @Override
+    public void setUpdatedVersion(long updatedVersion) {
+        this.updatedVersion = updatedVersion;
+    }
 }
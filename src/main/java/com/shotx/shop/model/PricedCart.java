@@ -0,0 +1,66 @@
+package com.shotx.shop.model;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Cart contents priced at current catalog prices. Lines keep the cart's order; products that
+ * no longer exist are listed with {@code missing} set and no price. The subtotal covers every
+ * line with a price, available or not.
+ */
+@Getter
+public class PricedCart {
+
+    private final List<Line> lines;
+    private final BigDecimal subtotal;
+    private final int itemCount;
+    // Every line exists and is in stock for the quantity in the cart
+    private final boolean allAvailable;
+
+    public PricedCart(List<Line> lines, BigDecimal subtotal, int itemCount, boolean allAvailable) {
+        this.lines = lines;
+        this.subtotal = subtotal;
+        this.itemCount = itemCount;
+        this.allAvailable = allAvailable;
+    }
+
+    /**
+     * The same cart with the given stock levels, availability recomputed
+     *
+     * @param stockOf Current stock per product id, null for a product deleted since it was priced
+     * @return The cart with the new levels
+     */
+    public PricedCart withStock(Function<Long, Integer> stockOf) {
+        List<Line> updated = new ArrayList<>(lines.size());
+        boolean available = true;
+        for (Line line : lines) {
+            Integer stock = line.missing() ? null : stockOf.apply(line.productId());
+            Line current = line.missing() ? line : new Line(line.productId(), line.name(), line.imageUrl(),
+                    line.quantity(), line.unitPrice(), line.lineTotal(), stock,
+                    stock != null && stock >= line.quantity(), false);
+            updated.add(current);
+            available &= current.available();
+        }
+        return new PricedCart(List.copyOf(updated), subtotal, itemCount, available);
+    }
+
+    /**
+     * One cart line
+     *
+     * @param productId Product ID
+     * @param name      Product name, null when missing
+     * @param imageUrl  Primary image URL, null when missing
+     * @param quantity  Quantity in the cart
+     * @param unitPrice Current price, null when missing
+     * @param lineTotal Unit price times quantity, null when missing
+     * @param stock     Units in stock, null when missing
+     * @param available Whether the stock covers the quantity
+     * @param missing   Whether the product no longer exists
+     */
+    public record Line(Long productId, String name, String imageUrl, int quantity, BigDecimal unitPrice,
+                       BigDecimal lineTotal, Integer stock, boolean available, boolean missing) {}
+}
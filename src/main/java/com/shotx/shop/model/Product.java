@@ -1,11 +1,15 @@
 package com.shotx.shop.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.shotx.shop.sync.CatalogChangeListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -13,10 +17,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-public class Product {
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(CatalogChangeListener.class)
+public class Product implements CatalogVersioned {
 
+    // Pooled sequence (a table on MySQL) so inserts can be JDBC-batched, unlike IDENTITY
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Product name is required")
@@ -33,19 +42,35 @@ public class Product {
     @NotNull(message = "Category is required")
     private Category category;
 
-    // Legacy field for backwards compatibility
+    // Primary image URL, kept in step with the images by syncImageSummary();
+    // products without images may still carry a legacy single URL here
     private String imageUrl;
 
+    // Number of images, denormalized so listings never touch product_image
+    @Column(nullable = false)
+    private int imageCount = 0;
+
     // Stock/inventory field
     @NotNull(message = "Stock quantity is required")
     @Min(value = 0, message = "Stock quantity cannot be negative")
     private Integer stock = 0;
 
+    // Catalog version of the last write, for the delta feed
+    @Column(nullable = false)
+    @JsonIgnore
+    private long updatedVersion;
+
+    // What the delta feed served as of the last load or write; stock is not part of it
+    @Transient
+    @JsonIgnore
+    private FeedState feedState;
+
     @OneToMany(
             mappedBy = "product",
             cascade = CascadeType.ALL,
             orphanRemoval = true
     )
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JsonManagedReference
     private List<ProductImage> images = new ArrayList<>();
     // Constructors
@@ -102,17 +127,6 @@ public class Product {
     }
 
     public String getImageUrl() {
-        // If we have a primary image in the collection, use that
-        ProductImage primaryImage = this.images.stream()
-                .filter(ProductImage::isIsPrimary)
-                .findFirst()
-                .orElse(null);
-
-        if (primaryImage != null) {
-            return primaryImage.getImageUrl();
-        }
-
-        // Otherwise, use the legacy field
         return imageUrl;
     }
 
@@ -128,6 +142,42 @@ public class Product {
         this.stock = stock;
     }
 
+    @Override
+    public CatalogEntityType getCatalogEntityType() {
+        return CatalogEntityType.PRODUCT;
+    }
+
+    @Override
+    public long getUpdatedVersion() {
+        return updatedVersion;
+    }
+
+    @Override
+    public void setUpdatedVersion(long updatedVersion) {
+        this.updatedVersion = updatedVersion;
+    }
+
+    @Override
+    public void markFeedState() {
+        this.feedState = FeedState.of(this);
+    }
+
+    @Override
+    public boolean hasFeedChanges() {
+        return feedState == null || !feedState.equals(FeedState.of(this));
+    }
+
+    private record FeedState(String name, String description, BigDecimal price, Long categoryId,
+                             String imageUrl, int imageCount) {
+
+        static FeedState of(Product product) {
+            Category category = product.getCategory();
+            BigDecimal price = product.getPrice() == null ? null : product.getPrice().stripTrailingZeros();
+            return new FeedState(product.getName(), product.getDescription(), price,
+                    category == null ? null : category.getId(), product.getImageUrl(), product.getImageCount());
+        }
+    }
+
     public List<ProductImage> getImages() {
         return images;
     }
@@ -136,6 +186,23 @@ public class Product {
         this.images = images;
     }
 
+    public int getImageCount() {
+        return imageCount;
+    }
+
+    public void setImageCount(int imageCount) {
+        this.imageCount = imageCount;
+    }
+
+    // Refresh the denormalized image columns after the image collection changed
+    public void syncImageSummary() {
+        this.imageCount = images.size();
+        images.stream()
+                .filter(ProductImage::isIsPrimary)
+                .findFirst()
+                .ifPresent(primary -> this.imageUrl = primary.getImageUrl());
+    }
+
     // Add image to product
     public void addImage(ProductImage img) {
         images.add(img);
@@ -0,0 +1,26 @@
+package com.shotx.shop.model;
+
+import java.util.List;
+
+/**
+ * Products resolved from a list of ids. {@code items} follow the order of the requested ids
+ * (duplicates collapsed); ids that do not exist are listed in {@code missing}.
+ */
+public class ProductBatch {
+
+    private final List<ProductSummary> items;
+    private final List<Long> missing;
+
+    public ProductBatch(List<ProductSummary> items, List<Long> missing) {
+        this.items = items;
+        this.missing = missing;
+    }
+
+    public List<ProductSummary> getItems() {
+        return items;
+    }
+
+    public List<Long> getMissing() {
+        return missing;
+    }
+}
@@ -0,0 +1,75 @@
+package com.shotx.shop.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last product on a page: its sort key and id.
+ * Handed to clients as an opaque token and used for keyset ("seek") pagination.
+ */
+public class ProductCursor {
+
+    private final ProductSort sort;
+    private final boolean descending;
+    private final Comparable<?> key;
+    private final Long id;
+
+    public ProductCursor(ProductSort sort, boolean descending, Comparable<?> key, Long id) {
+        this.sort = sort;
+        this.descending = descending;
+        this.key = key;
+        this.id = id;
+    }
+
+    public static ProductCursor after(ProductSummary product, double score, ProductSort sort, boolean descending) {
+        return new ProductCursor(sort, descending, sort.keyOf(product, score), product.getId());
+    }
+
+    /**
+     * Decode a token and make sure it was issued for the same ordering
+     *
+     * @param token      Token from a previous page
+     * @param sort       Sort of the current request
+     * @param descending Direction of the current request
+     * @return The decoded cursor
+     * @throws IllegalArgumentException If the token is malformed or was issued for another ordering
+     */
+    public static ProductCursor decode(String token, ProductSort sort, boolean descending) {
+        ProductCursor cursor;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // sort|direction|id|key - the key goes last as names may contain the separator
+            String[] parts = raw.split("\\|", 4);
+            ProductSort tokenSort = ProductSort.valueOf(parts[0]);
+            cursor = new ProductCursor(tokenSort, "desc".equals(parts[1]),
+                    tokenSort.parseKey(parts[3]), Long.valueOf(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (cursor.sort != sort || cursor.descending != descending) {
+            throw new IllegalArgumentException("Cursor was issued for a different sort order");
+        }
+        return cursor;
+    }
+
+    public String encode() {
+        String raw = sort.name() + "|" + (descending ? "desc" : "asc") + "|" + id + "|" + sort.formatKey(key);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ProductSort getSort() {
+        return sort;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public Comparable<?> getKey() {
+        return key;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,52 @@
+package com.shotx.shop.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read model for the product page: the summary plus every image in display order.
+ */
+@Getter @Setter
+public class ProductDetail extends ProductSummary {
+
+    private List<Image> images;
+
+    public ProductDetail() {}
+
+    public static ProductDetail from(Product product) {
+        ProductDetail detail = new ProductDetail();
+        detail.copyFrom(product);
+        detail.images = product.getImages().stream()
+                .sorted(Comparator.comparing(ProductImage::getDisplayOrder,
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .map(Image::from)
+                .toList();
+        return detail;
+    }
+
+    @Getter @Setter
+    public static class Image {
+
+        private Long id;
+        private String imageUrl;
+        // Same JSON name as ProductImage
+        @JsonProperty("isPrimary")
+        private boolean primary;
+        private Integer displayOrder;
+
+        public Image() {}
+
+        public static Image from(ProductImage image) {
+            Image view = new Image();
+            view.id = image.getId();
+            view.imageUrl = image.getImageUrl();
+            view.primary = image.isIsPrimary();
+            view.displayOrder = image.getDisplayOrder();
+            return view;
+        }
+    }
+}
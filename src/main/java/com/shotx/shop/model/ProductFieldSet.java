@@ -0,0 +1,98 @@
+package com.shotx.shop.model;
+
+import jakarta.persistence.Tuple;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Properties picked with the {@code fields=} parameter. Only these columns are selected from the
+ * database and only these keys are written to the response, in the order they were asked for.
+ */
+public class ProductFieldSet {
+
+    // Tuple aliases besides the plain field names
+    public static final String SORT_KEY = "sortKey";
+    public static final String CATEGORY_ID = "category_id";
+    public static final String CATEGORY_NAME = "category_name";
+
+    private static final List<String> SUMMARY_FIELDS = List.of(
+            "id", "name", "description", "price", "category", "categoryId", "imageUrl", "imageCount", "stock");
+    private static final String IMAGES = "images";
+
+    private final List<String> fields;
+
+    private ProductFieldSet(List<String> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * @param param  Comma separated property names
+     * @param detail Whether the single product view is asked for, which also offers images
+     */
+    public static ProductFieldSet parse(String param, boolean detail) {
+        Set<String> fields = new LinkedHashSet<>();
+        for (String part : param.split(",")) {
+            String field = part.trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            boolean known = SUMMARY_FIELDS.contains(field) || (detail && IMAGES.equals(field));
+            if (!known) {
+                throw new IllegalArgumentException("Unknown field: " + field);
+            }
+            fields.add(field);
+        }
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("fields must name at least one property");
+        }
+        return new ProductFieldSet(List.copyOf(fields));
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public boolean has(String field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * Stable name of the field set, for metrics
+     */
+    public String tag() {
+        List<String> sorted = new ArrayList<>(fields);
+        sorted.sort(null);
+        return String.join(",", sorted).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The response object for one projected row. Images are not part of the row: their key is
+     * reserved in place and the caller fills it in.
+     */
+    public Map<String, Object> toMap(Tuple row) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String field : fields) {
+            if (IMAGES.equals(field)) {
+                values.put(field, null);
+            } else if ("category".equals(field)) {
+                Long categoryId = row.get(CATEGORY_ID, Long.class);
+                Map<String, Object> category = null;
+                if (categoryId != null) {
+                    category = new LinkedHashMap<>();
+                    category.put("id", categoryId);
+                    category.put("name", row.get(CATEGORY_NAME));
+                }
+                values.put(field, category);
+            } else {
+                values.put(field, row.get(field));
+            }
+        }
+        return values;
+    }
+}
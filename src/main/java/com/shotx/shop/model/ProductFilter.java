@@ -0,0 +1,48 @@
+package com.shotx.shop.model;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Storefront filters on the product listing. Every part is optional and the parts are combined with AND;
+ * several categories match any of them.
+ */
+public class ProductFilter {
+
+    private final List<Long> categoryIds;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final boolean inStockOnly;
+
+    public ProductFilter(Collection<Long> categoryIds, BigDecimal minPrice, BigDecimal maxPrice, boolean inStockOnly) {
+        this.categoryIds = categoryIds == null ? List.of() : List.copyOf(categoryIds);
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.inStockOnly = inStockOnly;
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new IllegalArgumentException("minPrice must not be greater than maxPrice");
+        }
+    }
+
+    // Price and stock filters are only answered by the in-memory filter index
+    public boolean hasPriceOrStock() {
+        return minPrice != null || maxPrice != null || inStockOnly;
+    }
+
+    public List<Long> getCategoryIds() {
+        return categoryIds;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public boolean isInStockOnly() {
+        return inStockOnly;
+    }
+}
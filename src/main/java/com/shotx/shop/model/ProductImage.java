@@ -1,13 +1,21 @@
 package com.shotx.shop.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.shotx.shop.sync.CatalogChangeListener;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
-public class ProductImage {
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(CatalogChangeListener.class)
+public class ProductImage implements CatalogVersioned {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_image_seq")
+    @SequenceGenerator(name = "product_image_seq", sequenceName = "product_image_seq", allocationSize = 50)
     private Long id;
 
     private String imageUrl;
@@ -19,6 +27,11 @@ public class ProductImage {
     // Display order for the images
     private Integer displayOrder = 0;
 
+    // Catalog version of the last write, for the delta feed
+    @Column(nullable = false)
+    @JsonIgnore
+    private long updatedVersion;
+
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "product_id", nullable = false)
     @JsonBackReference
@@ -79,4 +92,19 @@ public class ProductImage {
     public void setDisplayOrder(Integer displayOrder) {
         this.displayOrder = displayOrder;
     }
-}
\ No newline at end of file
+
+    @Override
+    public CatalogEntityType getCatalogEntityType() {
+        return CatalogEntityType.PRODUCT_IMAGE;
+    }
+
+    @Override
+    public long getUpdatedVersion() {
+        return updatedVersion;
+    }
+
+    @Override
+    public void setUpdatedVersion(long updatedVersion) {
+        this.updatedVersion = updatedVersion;
+    }
+}
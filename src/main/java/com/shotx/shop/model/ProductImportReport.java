@@ -0,0 +1,53 @@
+package com.shotx.shop.model;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk product import: counters, throughput and the first row errors
+ */
+@Getter
+public class ProductImportReport {
+
+    private final int batchSize;
+    private long rowsRead;
+    private long imported;
+    private long failed;
+    private int batches;
+    private long durationMs;
+    private double rowsPerSecond;
+    private final List<RowError> errors = new ArrayList<>();
+    // More errors than the report lists
+    private boolean errorsTruncated;
+
+    public ProductImportReport(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void rowRead() {
+        rowsRead++;
+    }
+
+    public void batchImported(int rows) {
+        imported += rows;
+        batches++;
+    }
+
+    public void rowFailed(long line, String message, int maxErrors) {
+        failed++;
+        if (errors.size() < maxErrors) {
+            errors.add(new RowError(line, message));
+        } else {
+            errorsTruncated = true;
+        }
+    }
+
+    public void finish(long durationMs) {
+        this.durationMs = durationMs;
+        this.rowsPerSecond = durationMs == 0 ? imported : imported * 1000.0 / durationMs;
+    }
+
+    public record RowError(long line, String message) {}
+}
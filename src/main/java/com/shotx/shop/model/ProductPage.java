@@ -0,0 +1,46 @@
+package com.shotx.shop.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of products. {@code nextCursor} is passed back as {@code after}
+ * to get the following page and is null on the last page.
+ * {@code facets} holds product counts per category id when they were asked for.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProductPage {
+
+    // Summaries, or maps of the selected properties when fields= was given
+    private final List<?> items;
+    private final String nextCursor;
+    private final Map<Long, Integer> facets;
+
+    public ProductPage(List<?> items, String nextCursor) {
+        this(items, nextCursor, null);
+    }
+
+    public ProductPage(List<?> items, String nextCursor, Map<Long, Integer> facets) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.facets = facets;
+    }
+
+    public ProductPage withFacets(Map<Long, Integer> facets) {
+        return new ProductPage(items, nextCursor, facets);
+    }
+
+    public List<?> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public Map<Long, Integer> getFacets() {
+        return facets;
+    }
+}
@@ -0,0 +1,53 @@
+package com.shotx.shop.model;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * Sort keys supported by the paginated product listing and search.
+ * Every sort is made total by falling back to the product id.
+ */
+public enum ProductSort {
+    ID,
+    NAME,
+    PRICE,
+    // Search score, only meaningful for text queries
+    RELEVANCE;
+
+    public static ProductSort fromParam(String value) {
+        try {
+            return ProductSort.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sort: " + value);
+        }
+    }
+
+    /**
+     * The sort key of a product
+     *
+     * @param product The product
+     * @param score   Its search score, only used by {@link #RELEVANCE}
+     * @return The key products are ordered by
+     */
+    public Comparable<?> keyOf(ProductSummary product, double score) {
+        return switch (this) {
+            case ID -> product.getId();
+            case NAME -> product.getName();
+            case PRICE -> product.getPrice();
+            case RELEVANCE -> score;
+        };
+    }
+
+    public String formatKey(Comparable<?> key) {
+        return key instanceof BigDecimal decimal ? decimal.toPlainString() : String.valueOf(key);
+    }
+
+    public Comparable<?> parseKey(String value) {
+        return switch (this) {
+            case ID -> Long.valueOf(value);
+            case NAME -> value;
+            case PRICE -> new BigDecimal(value);
+            case RELEVANCE -> Double.valueOf(value);
+        };
+    }
+}
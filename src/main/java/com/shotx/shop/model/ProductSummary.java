@@ -0,0 +1,61 @@
+package com.shotx.shop.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Read model for product listings and search results: the product without its image gallery.
+ */
+@Getter @Setter
+public class ProductSummary {
+
+    private Long id;
+    private String name;
+    private String description;
+    private BigDecimal price;
+    private Category category;
+    /** URL of the primary image, or the legacy single image */
+    private String imageUrl;
+    private int imageCount;
+    // Left out of the catalog change feed, which does not version stock
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer stock;
+
+    public ProductSummary() {}
+
+    public static ProductSummary from(Product product) {
+        ProductSummary summary = new ProductSummary();
+        summary.copyFrom(product);
+        return summary;
+    }
+
+    /**
+     * A copy with another stock level
+     */
+    public ProductSummary withStock(Integer stock) {
+        ProductSummary copy = new ProductSummary();
+        copy.id = id;
+        copy.name = name;
+        copy.description = description;
+        copy.price = price;
+        copy.category = category;
+        copy.imageUrl = imageUrl;
+        copy.imageCount = imageCount;
+        copy.stock = stock;
+        return copy;
+    }
+
+    protected void copyFrom(Product product) {
+        this.id = product.getId();
+        this.name = product.getName();
+        this.description = product.getDescription();
+        this.price = product.getPrice();
+        this.category = product.getCategory();
+        this.imageUrl = product.getImageUrl();
+        this.imageCount = product.getImageCount();
+        this.stock = product.getStock();
+    }
+}
@@ -1,10 +1,77 @@
 package com.shotx.shop.repository;
 
 import com.shotx.shop.model.Cart;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Cart findByUsername(String username);
+
+    /**
+     * Create an empty cart for the user unless one exists. Atomic: the unique index on
+     * username decides between concurrent first requests.
+     *
+     * @param username Cart owner
+     * @param now      Creation time, from the application clock like every later change
+     */
+    @Modifying
+    @Query(value = "INSERT INTO cart (username, last_modified) VALUES (:username, :now)"
+            + " ON DUPLICATE KEY UPDATE username = username",
+            nativeQuery = true)
+    void insertIfAbsent(@Param("username") String username, @Param("now") LocalDateTime now);
+
+    /**
+     * Record that the cart row is being written from a Redis cart version, unless the same or a
+     * newer version was written already. Locks the row until the end of the transaction.
+     *
+     * @param username Cart owner
+     * @param version  Redis cart version being written
+     * @return 1 if the row is to be written, 0 if a newer flush got there first
+     */
+    @Modifying
+    @Query(value = "UPDATE cart SET flushed_version = :version WHERE username = :username AND flushed_version < :version",
+            nativeQuery = true)
+    int claimFlush(@Param("username") String username, @Param("version") long version);
+
+    /**
+     * Load a cart with its items and lock the cart row until the end of the transaction, so
+     * changes to one cart are applied one after another. Being a locking read, it sees the
+     * latest committed rows rather than the transaction's snapshot.
+     *
+     * @param username Cart owner
+     * @return The locked cart, or null if the user has none
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @EntityGraph(attributePaths = {"items"})
+    @Query("SELECT c FROM Cart c WHERE c.username = :username")
+    Cart findByUsernameForUpdate(@Param("username") String username);
+
+    /**
+     * Load a cart with its items in a single statement
+     *
+     * @param username Cart owner
+     * @return The cart, or null if the user has none
+     */
+    @EntityGraph(attributePaths = {"items"})
+    Cart findWithItemsByUsername(String username);
+
+    /**
+     * Load several users' carts with their items in a single statement
+     *
+     * @param usernames Cart owners
+     * @return The carts found, in no particular order
+     */
+    @EntityGraph(attributePaths = {"items"})
+    List<Cart> findWithItemsByUsernameIn(Collection<String> usernames);
 }
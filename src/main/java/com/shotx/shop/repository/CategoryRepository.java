@@ -1,9 +1,34 @@
 package com.shotx.shop.repository;
 
 import com.shotx.shop.model.Category;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
+
+    // Categories almost never change, keep the list in the query cache
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Category> findAll();
+
+    /**
+     * Categories written after a position of the catalog delta feed
+     *
+     * @param version  Catalog version of the position
+     * @param afterId  Last category ID already read within that version
+     * @param pageable Maximum number of rows
+     * @return Categories in (version, id) order
+     */
+    @Query("SELECT c FROM Category c WHERE c.updatedVersion > :version"
+            + " OR (c.updatedVersion = :version AND c.id > :afterId) ORDER BY c.updatedVersion, c.id")
+    List<Category> findChangedAfter(@Param("version") long version, @Param("afterId") long afterId, Pageable pageable);
 }
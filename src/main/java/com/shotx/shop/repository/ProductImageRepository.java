@@ -1,8 +1,8 @@
 package com.shotx.shop.repository;
 
 import com.shotx.shop.model.ProductImage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,26 +12,20 @@ import java.util.List;
 @Repository
 public interface ProductImageRepository extends JpaRepository<ProductImage, Long> {
 
-    // clear any existing primary for this product
-    @Modifying
-    @Query("""
-        UPDATE ProductImage pi
-          SET pi.isPrimary = false
-        WHERE pi.product.id = :productId
-          AND pi.isPrimary = true
-        """)
-    void clearPrimaryFlags(@Param("productId") Long productId);
-
-    // mark the chosen image as primary
-    @Modifying
-    @Query("""
-        UPDATE ProductImage pi
-          SET pi.isPrimary = true
-        WHERE pi.id = :imageId
-        """)
-    void setPrimaryFlag(@Param("imageId") Long imageId);
-
     List<ProductImage> findByProductId(Long productId);
 
     ProductImage findByProductIdAndIsPrimaryIsTrue(Long productId);
+
+    /**
+     * Images written after a position of the catalog delta feed. The product is not fetched;
+     * only its ID is read.
+     *
+     * @param version  Catalog version of the position
+     * @param afterId  Last image ID already read within that version
+     * @param pageable Maximum number of rows
+     * @return Images in (version, id) order
+     */
+    @Query("SELECT i FROM ProductImage i WHERE i.updatedVersion > :version"
+            + " OR (i.updatedVersion = :version AND i.id > :afterId) ORDER BY i.updatedVersion, i.id")
+    List<ProductImage> findChangedAfter(@Param("version") long version, @Param("afterId") long afterId, Pageable pageable);
 }
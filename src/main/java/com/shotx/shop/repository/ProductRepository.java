@@ -1,39 +1,159 @@
 package com.shotx.shop.repository;
 
 import com.shotx.shop.model.Product;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
 
     /**
-     * Search products by name, description, or category name
+     * Read a product with a row lock, bypassing the second-level cache, so stock
+     * updates always start from the committed value
      *
-     * @param query The search term
-     * @return List of products matching the search criteria
+     * @param id Product ID
+     * @return The locked product
      */
-    @Query("SELECT p FROM Product p LEFT JOIN p.category c " +
-            "WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :query, '%')) " +
-            "OR LOWER(p.description) LIKE LOWER(CONCAT('%', :query, '%')) " +
-            "OR LOWER(c.name) LIKE LOWER(CONCAT('%', :query, '%'))")
-    List<Product> searchProducts(@Param("query") String query);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id = :id")
+    Optional<Product> findByIdForUpdate(@Param("id") Long id);
 
     /**
-     * Search products by name, description, or category name within specific categories
+     * Load every product with its category in a single statement. Listings read the
+     * denormalized image columns, so product_image is not touched.
      *
-     * @param query The search term
-     * @param categoryIds List of category IDs to filter by
-     * @return List of products matching the search criteria and categories
+     * @return All products with their categories
      */
-    @Query("SELECT p FROM Product p LEFT JOIN p.category c " +
-            "WHERE (LOWER(p.name) LIKE LOWER(CONCAT('%', :query, '%')) " +
-            "OR LOWER(p.description) LIKE LOWER(CONCAT('%', :query, '%')) " +
-            "OR LOWER(c.name) LIKE LOWER(CONCAT('%', :query, '%'))) " +
-            "AND c.id IN :categoryIds")
-    List<Product> searchProductsByCategories(@Param("query") String query, @Param("categoryIds") List<Long> categoryIds);
-}
\ No newline at end of file
+    @EntityGraph(attributePaths = {"category"})
+    @Query("SELECT p FROM Product p")
+    List<Product> findAllForListing();
+
+    /**
+     * Load a single product with its category and images in a single statement
+     *
+     * @param id Product ID
+     * @return The product, fully initialized
+     */
+    @EntityGraph(attributePaths = {"category", "images"})
+    @Query("SELECT p FROM Product p WHERE p.id = :id")
+    Optional<Product> findWithImagesById(@Param("id") Long id);
+
+    /**
+     * Every product with its category as a forward-only cursor, for the catalog export.
+     * A fetch size of Integer.MIN_VALUE makes MySQL Connector/J stream rows one at a
+     * time instead of buffering the whole result; the rows bypass the second-level cache.
+     * Must be consumed inside a transaction and closed.
+     *
+     * @return Products in id order
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("SELECT p FROM Product p JOIN FETCH p.category ORDER BY p.id")
+    Stream<Product> streamAllForExport();
+
+    /**
+     * Products written after a position of the catalog delta feed, with their categories
+     *
+     * @param version  Catalog version of the position
+     * @param afterId  Last product ID already read within that version
+     * @param pageable Maximum number of rows
+     * @return Products in (version, id) order
+     */
+    @EntityGraph(attributePaths = {"category"})
+    @Query("SELECT p FROM Product p WHERE p.updatedVersion > :version"
+            + " OR (p.updatedVersion = :version AND p.id > :afterId) ORDER BY p.updatedVersion, p.id")
+    List<Product> findChangedAfter(@Param("version") long version, @Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * Stock of several products in a single statement, without loading the entities
+     *
+     * @param ids Product IDs
+     * @return Stock of the products found, in no particular order
+     */
+    @Query("SELECT p.id AS id, p.stock AS stock FROM Product p WHERE p.id IN :ids")
+    List<StockLevel> findStockLevels(@Param("ids") Collection<Long> ids);
+
+    interface StockLevel {
+        Long getId();
+
+        Integer getStock();
+    }
+
+    /**
+     * Stock of every product, two columns per row, to refresh levels that the change feed does
+     * not version
+     */
+    @Query("SELECT p.id AS id, p.stock AS stock FROM Product p")
+    List<StockLevel> findAllStockLevels();
+
+    /**
+     * Price and stock of several products in a single statement, for order placement
+     *
+     * @param ids Product IDs
+     * @return Price and stock of the products found, ordered by id
+     */
+    @Query("SELECT p.id AS id, p.price AS price, p.stock AS stock FROM Product p WHERE p.id IN :ids ORDER BY p.id")
+    List<PriceLevel> findPriceLevels(@Param("ids") Collection<Long> ids);
+
+    interface PriceLevel {
+        Long getId();
+
+        BigDecimal getPrice();
+
+        Integer getStock();
+    }
+
+    /**
+     * Load several products with their categories in a single statement
+     *
+     * @param ids Product IDs
+     * @return The products found, in no particular order
+     */
+    @EntityGraph(attributePaths = {"category"})
+    List<Product> findByIdIn(Collection<Long> ids);
+
+    /**
+     * Find all products of a category
+     *
+     * @param categoryId Category ID
+     * @return Products of the category
+     */
+    @EntityGraph(attributePaths = {"category"})
+    List<Product> findByCategoryId(Long categoryId);
+
+    /**
+     * IDs of the products in a category
+     *
+     * @param categoryId Category ID
+     * @return Product IDs
+     */
+    @Query("SELECT p.id FROM Product p WHERE p.category.id = :categoryId")
+    List<Long> findIdsByCategoryId(@Param("categoryId") Long categoryId);
+
+    /**
+     * Find all products in any of the given categories, served by the category_id index
+     *
+     * @param categoryIds Category IDs to filter by
+     * @return Products of those categories
+     */
+    @EntityGraph(attributePaths = {"category"})
+    List<Product> findByCategoryIdIn(Collection<Long> categoryIds);
+}
@@ -0,0 +1,44 @@
+package com.shotx.shop.repository;
+
+import com.shotx.shop.model.Product;
+import com.shotx.shop.model.ProductCursor;
+import com.shotx.shop.model.ProductFieldSet;
+import com.shotx.shop.model.ProductSort;
+import jakarta.persistence.Tuple;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ProductRepositoryCustom {
+
+    /**
+     * Keyset page of products: rows strictly after the cursor in (sort key, id) order,
+     * with their categories.
+     *
+     * @param categoryIds Optional category filter, null or empty means all categories
+     * @param sort        Sort key, {@link ProductSort#RELEVANCE} is not supported here
+     * @param descending  Sort direction
+     * @param after       Last row of the previous page, null for the first page
+     * @param limit       Maximum number of rows
+     * @return Products in page order
+     */
+    List<Product> findPage(Collection<Long> categoryIds, ProductSort sort, boolean descending,
+                           ProductCursor after, int limit);
+
+    /**
+     * Keyset page like {@link #findPage}, selecting only the requested columns.
+     * Every tuple carries "id", plus {@link ProductFieldSet#SORT_KEY} unless sorting by id.
+     *
+     * @param limit  Maximum number of rows, 0 for no limit
+     * @param fields Columns to select
+     * @return Rows in page order
+     */
+    List<Tuple> findPageFields(Collection<Long> categoryIds, ProductSort sort, boolean descending,
+                               ProductCursor after, int limit, ProductFieldSet fields);
+
+    /**
+     * The requested columns of a single product
+     */
+    Optional<Tuple> findFieldsById(Long id, ProductFieldSet fields);
+}
@@ -0,0 +1,149 @@
+package com.shotx.shop.repository;
+
+import com.shotx.shop.model.Category;
+import com.shotx.shop.model.Product;
+import com.shotx.shop.model.ProductCursor;
+import com.shotx.shop.model.ProductFieldSet;
+import com.shotx.shop.model.ProductSort;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Criteria based keyset pagination. Each sort is backed by a (column, id) index
+ * so a page costs one index range scan however deep into the catalog it is.
+ * Only the to-one category is fetched, which keeps the row limit in SQL.
+ * The field projections select just the requested columns as tuples.
+ */
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Product> findPage(Collection<Long> categoryIds, ProductSort sort, boolean descending,
+                                  ProductCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Product> query = cb.createQuery(Product.class);
+        Root<Product> product = query.from(Product.class);
+        product.fetch("category");
+
+        List<Predicate> predicates = keyset(cb, query, product, categoryIds, sort, descending, after);
+        query.select(product).where(predicates.toArray(new Predicate[0]));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<Tuple> findPageFields(Collection<Long> categoryIds, ProductSort sort, boolean descending,
+                                      ProductCursor after, int limit, ProductFieldSet fields) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Product> product = query.from(Product.class);
+
+        List<Predicate> predicates = keyset(cb, query, product, categoryIds, sort, descending, after);
+        List<Selection<?>> selections = selections(product, fields);
+        if (sort != ProductSort.ID) {
+            selections.add(product.get(sort == ProductSort.NAME ? "name" : "price").alias(ProductFieldSet.SORT_KEY));
+        }
+        query.multiselect(selections).where(predicates.toArray(new Predicate[0]));
+        TypedQuery<Tuple> typed = entityManager.createQuery(query);
+        if (limit > 0) {
+            typed.setMaxResults(limit);
+        }
+        return typed.getResultList();
+    }
+
+    @Override
+    public Optional<Tuple> findFieldsById(Long id, ProductFieldSet fields) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Product> product = query.from(Product.class);
+        query.multiselect(selections(product, fields)).where(cb.equal(product.get("id"), id));
+        return entityManager.createQuery(query).getResultStream().findFirst();
+    }
+
+    // The id is always selected; the category is joined only when its name is wanted
+    private static List<Selection<?>> selections(Root<Product> product, ProductFieldSet fields) {
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(product.get("id").alias("id"));
+        for (String field : fields.getFields()) {
+            switch (field) {
+                case "id", "images" -> {
+                }
+                case "category" -> {
+                    Join<Product, Category> category = product.join("category", JoinType.LEFT);
+                    selections.add(category.get("id").alias(ProductFieldSet.CATEGORY_ID));
+                    selections.add(category.get("name").alias(ProductFieldSet.CATEGORY_NAME));
+                }
+                case "categoryId" -> selections.add(product.get("category").get("id").alias(field));
+                default -> selections.add(product.get(field).alias(field));
+            }
+        }
+        return selections;
+    }
+
+    // Category filter and seek predicate; sets the (key, id) order on the query
+    private static List<Predicate> keyset(CriteriaBuilder cb, CriteriaQuery<?> query, Root<Product> product,
+                                          Collection<Long> categoryIds, ProductSort sort, boolean descending,
+                                          ProductCursor after) {
+        Path<Long> id = product.get("id");
+        List<Predicate> predicates = new ArrayList<>();
+        if (categoryIds != null && !categoryIds.isEmpty()) {
+            predicates.add(product.get("category").get("id").in(categoryIds));
+        }
+
+        switch (sort) {
+            case ID -> {
+                if (after != null) {
+                    predicates.add(descending ? cb.lessThan(id, after.getId()) : cb.greaterThan(id, after.getId()));
+                }
+                query.orderBy(descending ? cb.desc(id) : cb.asc(id));
+            }
+            case NAME -> {
+                Path<String> name = product.get("name");
+                if (after != null) {
+                    predicates.add(seek(cb, name, (String) after.getKey(), id, after.getId(), descending));
+                }
+                query.orderBy(descending ? cb.desc(name) : cb.asc(name), descending ? cb.desc(id) : cb.asc(id));
+            }
+            case PRICE -> {
+                Path<BigDecimal> price = product.get("price");
+                if (after != null) {
+                    predicates.add(seek(cb, price, (BigDecimal) after.getKey(), id, after.getId(), descending));
+                }
+                query.orderBy(descending ? cb.desc(price) : cb.asc(price), descending ? cb.desc(id) : cb.asc(id));
+            }
+            default -> throw new IllegalArgumentException("Unsupported sort: " + sort);
+        }
+        return predicates;
+    }
+
+    // (key, id) > (afterKey, afterId), or < when descending
+    private static <T extends Comparable<? super T>> Predicate seek(CriteriaBuilder cb, Expression<T> key, T afterKey,
+                                                                    Path<Long> id, Long afterId, boolean descending) {
+        if (descending) {
+            return cb.or(cb.lessThan(key, afterKey),
+                    cb.and(cb.equal(key, afterKey), cb.lessThan(id, afterId)));
+        }
+        return cb.or(cb.greaterThan(key, afterKey),
+                cb.and(cb.equal(key, afterKey), cb.greaterThan(id, afterId)));
+    }
+}
@@ -0,0 +1,301 @@
+package com.shotx.shop.search;
+
+import com.shotx.shop.model.ProductCursor;
+import com.shotx.shop.model.ProductFilter;
+import com.shotx.shop.model.ProductSort;
+import com.shotx.shop.model.ProductSummary;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar projection of the catalog for storefront filters (category, price range, in stock).
+ * <p>
+ * Every product owns a slot in a set of primitive arrays (id, price in cents, stock, category).
+ * Per-category and in-stock bitsets over the slots let a combined filter be evaluated with a few
+ * bitwise ANDs; a price range is one binary search over the slots sorted by price. The price and
+ * id orderings are rebuilt lazily after inserts, deletes and price changes, so the frequent stock
+ * updates only flip a bit.
+ */
+@Component
+public class CatalogFilterIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] priceCents = new long[INITIAL_CAPACITY];
+    private int[] stock = new int[INITIAL_CAPACITY];
+    private long[] categories = new long[INITIAL_CAPACITY];
+    // Slots in use so far; freed slots below it are reused first
+    private int slotCount;
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<Long, Integer> slotOf = new HashMap<>();
+
+    private final BitSet live = new BitSet();
+    private final BitSet inStock = new BitSet();
+    private final Map<Long, BitSet> byCategory = new HashMap<>();
+
+    // Live slots ordered by (price, id) and by id
+    private int[] byPrice = new int[0];
+    private int[] byId = new int[0];
+    private boolean ordersStale;
+
+    public void rebuild(Collection<ProductSummary> products) {
+        lock.writeLock().lock();
+        try {
+            int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, products.size())) << 1);
+            ids = new long[capacity];
+            priceCents = new long[capacity];
+            stock = new int[capacity];
+            categories = new long[capacity];
+            slotCount = 0;
+            freeSlots.clear();
+            slotOf.clear();
+            live.clear();
+            inStock.clear();
+            byCategory.clear();
+            for (ProductSummary product : products) {
+                write(product);
+            }
+            rebuildOrders();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a product or refresh its price, stock and category
+     */
+    public void put(ProductSummary product) {
+        lock.writeLock().lock();
+        try {
+            write(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotOf.remove(productId);
+            if (slot == null) {
+                return;
+            }
+            live.clear(slot);
+            inStock.clear(slot);
+            BitSet members = byCategory.get(categories[slot]);
+            if (members != null) {
+                members.clear(slot);
+            }
+            freeSlots.push(slot);
+            ordersStale = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Indexed stock of the product, null when it is not indexed
+     */
+    public Integer stockOf(Long productId) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotOf.get(productId);
+            return slot == null ? null : stock[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Keyset page of product ids matching the filter
+     *
+     * @param filter     Category, price and stock filter
+     * @param sort       {@link ProductSort#ID} or {@link ProductSort#PRICE}
+     * @param descending Sort direction
+     * @param after      Last row of the previous page, null for the first page
+     * @param limit      Maximum number of ids
+     * @return Product IDs in page order
+     */
+    public List<Long> filter(ProductFilter filter, ProductSort sort, boolean descending, ProductCursor after, int limit) {
+        if (sort != ProductSort.ID && sort != ProductSort.PRICE) {
+            throw new IllegalArgumentException("Filtered listings can only be sorted by id or price");
+        }
+        lock.readLock().lock();
+        try {
+            if (ordersStale) {
+                // Upgrade to refresh the orderings, then carry on under the read lock
+                lock.readLock().unlock();
+                lock.writeLock().lock();
+                try {
+                    if (ordersStale) {
+                        rebuildOrders();
+                    }
+                    lock.readLock().lock();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            BitSet matches = matching(filter);
+            int[] order = sort == ProductSort.PRICE ? byPrice : byId;
+
+            int position;
+            if (after == null) {
+                position = descending ? order.length - 1 : 0;
+            } else {
+                long afterKey = sort == ProductSort.PRICE ? toCents((BigDecimal) after.getKey(), RoundingMode.HALF_UP) : 0;
+                long afterId = after.getId();
+                IntPredicate notAfter = sort == ProductSort.PRICE
+                        ? slot -> compare(priceCents[slot], ids[slot], afterKey, afterId) <= 0
+                        : slot -> ids[slot] <= afterId;
+                IntPredicate before = sort == ProductSort.PRICE
+                        ? slot -> compare(priceCents[slot], ids[slot], afterKey, afterId) < 0
+                        : slot -> ids[slot] < afterId;
+                position = descending ? lowerBound(order, before) - 1 : lowerBound(order, notAfter);
+            }
+
+            List<Long> page = new ArrayList<>(Math.min(limit, 256));
+            int step = descending ? -1 : 1;
+            for (int i = position; i >= 0 && i < order.length && page.size() < limit; i += step) {
+                int slot = order[i];
+                if (matches.get(slot)) {
+                    page.add(ids[slot]);
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Caller holds a lock and the orderings are current
+    private BitSet matching(ProductFilter filter) {
+        BitSet matches = (BitSet) live.clone();
+        if (!filter.getCategoryIds().isEmpty()) {
+            BitSet anyCategory = new BitSet();
+            for (Long categoryId : filter.getCategoryIds()) {
+                BitSet members = byCategory.get(categoryId);
+                if (members != null) {
+                    anyCategory.or(members);
+                }
+            }
+            matches.and(anyCategory);
+        }
+        if (filter.isInStockOnly()) {
+            matches.and(inStock);
+        }
+        if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+            long min = filter.getMinPrice() == null ? Long.MIN_VALUE : toCents(filter.getMinPrice(), RoundingMode.CEILING);
+            long max = filter.getMaxPrice() == null ? Long.MAX_VALUE : toCents(filter.getMaxPrice(), RoundingMode.FLOOR);
+            int from = lowerBound(byPrice, slot -> priceCents[slot] < min);
+            int to = lowerBound(byPrice, slot -> priceCents[slot] <= max);
+            BitSet inRange = new BitSet();
+            for (int i = from; i < to; i++) {
+                inRange.set(byPrice[i]);
+            }
+            matches.and(inRange);
+        }
+        return matches;
+    }
+
+    private void write(ProductSummary product) {
+        Long id = product.getId();
+        long cents = toCents(product.getPrice(), RoundingMode.HALF_UP);
+        long categoryId = product.getCategory() != null && product.getCategory().getId() != null
+                ? product.getCategory().getId() : 0;
+        int units = product.getStock() != null ? product.getStock() : 0;
+
+        Integer existing = slotOf.get(id);
+        int slot;
+        if (existing != null) {
+            slot = existing;
+            if (priceCents[slot] != cents) {
+                ordersStale = true;
+            }
+            if (categories[slot] != categoryId) {
+                BitSet members = byCategory.get(categories[slot]);
+                if (members != null) {
+                    members.clear(slot);
+                }
+            }
+        } else {
+            slot = allocate();
+            slotOf.put(id, slot);
+            ids[slot] = id;
+            live.set(slot);
+            ordersStale = true;
+        }
+        priceCents[slot] = cents;
+        stock[slot] = units;
+        categories[slot] = categoryId;
+        inStock.set(slot, units > 0);
+        byCategory.computeIfAbsent(categoryId, k -> new BitSet()).set(slot);
+    }
+
+    private int allocate() {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.pop();
+        }
+        if (slotCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            priceCents = Arrays.copyOf(priceCents, capacity);
+            stock = Arrays.copyOf(stock, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+        }
+        return slotCount++;
+    }
+
+    private void rebuildOrders() {
+        int[] slots = live.stream().toArray();
+        byId = IntStream.of(slots).boxed()
+                .sorted((a, b) -> Long.compare(ids[a], ids[b]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        byPrice = IntStream.of(slots).boxed()
+                .sorted((a, b) -> compare(priceCents[a], ids[a], priceCents[b], ids[b]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        ordersStale = false;
+    }
+
+    // First position whose slot no longer satisfies isBefore; order must be partitioned by it
+    private static int lowerBound(int[] order, IntPredicate isBefore) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (isBefore.test(order[mid])) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(long key, long id, long otherKey, long otherId) {
+        int byKey = Long.compare(key, otherKey);
+        return byKey != 0 ? byKey : Long.compare(id, otherId);
+    }
+
+    private static long toCents(BigDecimal price, RoundingMode rounding) {
+        return price == null ? 0 : price.movePointRight(2).setScale(0, rounding).longValue();
+    }
+}
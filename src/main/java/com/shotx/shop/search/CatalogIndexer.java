@@ -0,0 +1,527 @@
+package com.shotx.shop.search;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shotx.shop.event.CategoryChangedEvent;
+import com.shotx.shop.event.ProductChangedEvent;
+import com.shotx.shop.event.ProductsImportedEvent;
+import com.shotx.shop.model.CatalogChanges;
+import com.shotx.shop.model.Category;
+import com.shotx.shop.model.Product;
+import com.shotx.shop.model.ProductSummary;
+import com.shotx.shop.repository.CategoryRepository;
+import com.shotx.shop.repository.ProductRepository;
+import com.shotx.shop.stream.ProductLevel;
+import com.shotx.shop.stream.ProductLevelStream;
+import com.shotx.shop.sync.CatalogChangeLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the in-memory catalog structures in step with the database: a build from the local
+ * snapshot plus the change feed since it (or from the whole catalog) once the application is up,
+ * then one product at a time as {@code ProductService} and {@code CategoryService} commit changes.
+ * <p>
+ * Each node hears only about its own commits, so after applying one it publishes the ids of the
+ * products and categories it touched on {@value #INDEX_CHANNEL}, and the other nodes re-read them
+ * from the database. Stock levels come from {@link ProductLevelStream#LEVEL_CHANNEL}, re-read in
+ * batches as well. Updates from other nodes are applied in arrival order on a thread of their own.
+ */
+@Component
+public class CatalogIndexer {
+
+    public static final String INDEX_CHANNEL = "catalog:index";
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogIndexer.class);
+
+    // Products and categories re-indexed by the node of the given origin
+    private record IndexChange(String origin, List<Long> productIds, List<Long> categoryIds) {}
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ProductSearchEngine searchEngine;
+    private final SuggestionIndex suggestionIndex;
+    private final CatalogFilterIndex filterIndex;
+    private final CatalogSnapshotStore snapshotStore;
+    private final CatalogChangeLog changeLog;
+    private final MeterRegistry meterRegistry;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService remoteUpdates;
+    private final String origin = UUID.randomUUID().toString();
+
+    // Products whose stock changed on some node and is still to be re-read
+    private final Set<Long> pendingStock = ConcurrentHashMap.newKeySet();
+    // Bumped after every change to the searchable contents, stock aside
+    private final AtomicLong searchGeneration = new AtomicLong();
+    // Tick of the last in-memory change of each product, so reconcile can leave alone what
+    // changed after it started reading
+    private final AtomicLong ticks = new AtomicLong();
+    private final Map<Long, Long> changedAt = new ConcurrentHashMap<>();
+
+    @Value("${shop.catalog-snapshot.enabled}")
+    private boolean snapshotEnabled;
+
+    private static final int DELTA_PAGE_SIZE = 1000;
+
+    private volatile boolean built;
+    // Change version of the snapshot on disk, and the one every change up to is applied in memory
+    private volatile long snapshotVersion = -1;
+    private volatile long reconciledVersion;
+
+    public CatalogIndexer(ProductRepository productRepository,
+                          CategoryRepository categoryRepository,
+                          ProductSearchEngine searchEngine,
+                          SuggestionIndex suggestionIndex,
+                          CatalogFilterIndex filterIndex,
+                          CatalogSnapshotStore snapshotStore,
+                          CatalogChangeLog changeLog,
+                          MeterRegistry meterRegistry,
+                          StringRedisTemplate redisTemplate,
+                          RedisMessageListenerContainer listenerContainer,
+                          ObjectMapper objectMapper,
+                          PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.searchEngine = searchEngine;
+        this.suggestionIndex = suggestionIndex;
+        this.filterIndex = filterIndex;
+        this.snapshotStore = snapshotStore;
+        this.changeLog = changeLog;
+        this.meterRegistry = meterRegistry;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.remoteUpdates = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("catalog-index-"));
+        listenerContainer.addMessageListener(
+                (message, pattern) -> receiveChange(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(INDEX_CHANNEL));
+        listenerContainer.addMessageListener(
+                (message, pattern) -> receiveLevel(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(ProductLevelStream.LEVEL_CHANNEL));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        remoteUpdates.shutdownNow();
+    }
+
+    /**
+     * @return Counter that moves whenever this node's search index changes, other than its stock
+     * levels, whichever node the change was committed on
+     */
+    public long searchGeneration() {
+        return searchGeneration.get();
+    }
+
+    // Serve from the local snapshot when there is one, replaying the changes committed since it was
+    // written; otherwise read the whole catalog
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void buildOnStartup() {
+        if (snapshotEnabled && loadFromSnapshot()) {
+            return;
+        }
+        loadFromDatabase();
+    }
+
+    /**
+     * Fill the in-memory structures from the local snapshot, then apply the catalog changes recorded
+     * after its change version and refresh the stock levels. Timed as
+     * {@code catalog.warmup{source=snapshot}}.
+     *
+     * @return false when there is no usable snapshot
+     */
+    @Transactional(readOnly = true)
+    public boolean loadFromSnapshot() {
+        long start = System.nanoTime();
+        Optional<CatalogSnapshotStore.Snapshot> read = snapshotStore.read();
+        if (read.isEmpty()) {
+            return false;
+        }
+        CatalogSnapshotStore.Snapshot snapshot = read.get();
+        // First statement of the transaction, so the reads below see exactly the changes up to it
+        long version = changeLog.currentVersion();
+        if (snapshot.changeVersion() > version) {
+            log.warn("Ignoring the catalog snapshot at change version {}: the database is at {}",
+                    snapshot.changeVersion(), version);
+            return false;
+        }
+
+        searchEngine.restore(new ProductSearchEngine.Contents(snapshot.products(), snapshot.postings()));
+        filterIndex.rebuild(snapshot.products());
+        suggestionIndex.rebuild(productNames(snapshot.products()), categoryNames(snapshot.categories()));
+        // Changes applied before the restore were overwritten by it; later ones are newer than the reads below
+        long since = ticks.get();
+        int changes = reconcile(snapshot.changeVersion(), since);
+        int restocked = refreshStock(since);
+        reconciledVersion = version;
+        snapshotVersion = snapshot.changeVersion();
+        built = true;
+        searchGeneration.incrementAndGet();
+
+        long elapsed = recordWarmup("snapshot", start);
+        log.info("Loaded {} products from the catalog snapshot ({} bytes, change version {}), applied {} changes "
+                        + "up to version {} and {} stock levels in {} ms", snapshot.products().size(),
+                snapshot.sizeBytes(), snapshot.changeVersion(), changes, version, restocked, elapsed);
+        return true;
+    }
+
+    /**
+     * Fill the in-memory structures from the whole catalog. Timed as {@code catalog.warmup{source=database}}.
+     */
+    @Transactional(readOnly = true)
+    public void loadFromDatabase() {
+        long start = System.nanoTime();
+        long version = changeLog.currentVersion();
+        List<ProductSummary> products = productRepository.findAllForListing().stream()
+                .map(ProductSummary::from)
+                .toList();
+        searchEngine.rebuild(products);
+        filterIndex.rebuild(products);
+        suggestionIndex.rebuild(productNames(products), categoryNames(categoryRepository.findAll()));
+        reconciledVersion = version;
+        built = true;
+        searchGeneration.incrementAndGet();
+
+        long elapsed = recordWarmup("database", start);
+        log.info("Indexed {} products from the database at change version {} in {} ms",
+                products.size(), version, elapsed);
+    }
+
+    // Catches up with the changes committed since the last write, including those a missed message
+    // left out, so the file is labelled with a change version it fully contains. The reads below see
+    // the database as of the transaction start; products changed in memory since then, on a commit
+    // from any node or a stock update, are newer than that and are left alone.
+    @Scheduled(fixedDelayString = "${shop.catalog-snapshot.interval-ms}",
+            initialDelayString = "${shop.catalog-snapshot.interval-ms}")
+    @Transactional(readOnly = true)
+    public void writeSnapshot() {
+        if (!snapshotEnabled || !built) {
+            return;
+        }
+        long since = ticks.get();
+        long version = changeLog.currentVersion();
+        if (version == snapshotVersion) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            int changes = reconcile(reconciledVersion, since);
+            reconciledVersion = version;
+            ProductSearchEngine.Contents contents = searchEngine.getContents();
+            snapshotStore.write(version, categoryRepository.findAll(), contents);
+            snapshotVersion = version;
+            log.debug("Wrote catalog snapshot of {} products at change version {} ({} changes applied) in {} ms",
+                    contents.products().size(), version, changes, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            log.warn("Could not write the catalog snapshot: {}", e.getMessage());
+        }
+    }
+
+    // Applies the categories, products and deletions recorded after the given change version, in
+    // keyset pages; a changed category re-indexes its products, as a rename does. Products changed in
+    // memory after the given tick are skipped.
+    private int reconcile(long fromVersion, long since) {
+        int changes = 0;
+        PageRequest page = PageRequest.of(0, DELTA_PAGE_SIZE);
+
+        long version = fromVersion;
+        long afterId = Long.MAX_VALUE;
+        List<Category> categories;
+        do {
+            categories = categoryRepository.findChangedAfter(version, afterId, page);
+            for (Category category : categories) {
+                suggestionIndex.put(Suggestion.Type.CATEGORY, category.getId(), category.getName());
+                for (Product product : productRepository.findByCategoryId(category.getId())) {
+                    if (!changedSince(product.getId(), since)) {
+                        searchEngine.index(ProductSummary.from(product));
+                    }
+                }
+                version = category.getUpdatedVersion();
+                afterId = category.getId();
+            }
+            changes += categories.size();
+        } while (categories.size() == DELTA_PAGE_SIZE);
+
+        version = fromVersion;
+        afterId = Long.MAX_VALUE;
+        List<Product> products;
+        do {
+            products = productRepository.findChangedAfter(version, afterId, page);
+            for (Product product : products) {
+                if (!changedSince(product.getId(), since)) {
+                    indexProduct(product);
+                }
+                version = product.getUpdatedVersion();
+                afterId = product.getId();
+            }
+            changes += products.size();
+        } while (products.size() == DELTA_PAGE_SIZE);
+
+        version = fromVersion;
+        long afterSequence = Long.MAX_VALUE;
+        List<CatalogChanges.Tombstone> deletions;
+        do {
+            deletions = changeLog.findDeletions(version, afterSequence, DELTA_PAGE_SIZE);
+            for (CatalogChanges.Tombstone deletion : deletions) {
+                switch (deletion.type()) {
+                    case PRODUCT -> {
+                        if (!changedSince(deletion.id(), since)) {
+                            removeProduct(deletion.id());
+                        }
+                    }
+                    case CATEGORY -> suggestionIndex.remove(Suggestion.Type.CATEGORY, deletion.id());
+                    default -> {
+                        // Image changes are stamped on their product as well
+                    }
+                }
+                version = deletion.version();
+                afterSequence = deletion.sequence();
+            }
+            changes += deletions.size();
+        } while (deletions.size() == DELTA_PAGE_SIZE);
+        searchGeneration.incrementAndGet();
+        return changes;
+    }
+
+    // Stock-only writes take no change version, so every level is compared, two columns per product
+    private int refreshStock(long since) {
+        int restocked = 0;
+        for (ProductRepository.StockLevel level : productRepository.findAllStockLevels()) {
+            if (!changedSince(level.getId(), since) && applyStock(level)) {
+                restocked++;
+            }
+        }
+        return restocked;
+    }
+
+    private boolean applyStock(ProductRepository.StockLevel level) {
+        Integer indexed = filterIndex.stockOf(level.getId());
+        if (indexed == null || indexed.equals(level.getStock())) {
+            return false;
+        }
+        Optional<ProductSummary> product = searchEngine.getDocument(level.getId());
+        if (product.isEmpty()) {
+            return false;
+        }
+        ProductSummary restocked = product.get().withStock(level.getStock());
+        searchEngine.index(restocked);
+        filterIndex.put(restocked);
+        touch(level.getId());
+        return true;
+    }
+
+    private void touch(Long productId) {
+        changedAt.put(productId, ticks.incrementAndGet());
+    }
+
+    private boolean changedSince(Long productId, long tick) {
+        Long changed = changedAt.get(productId);
+        return changed != null && changed > tick;
+    }
+
+    private static Map<Long, String> productNames(List<ProductSummary> products) {
+        return products.stream().filter(p -> p.getName() != null)
+                .collect(Collectors.toMap(ProductSummary::getId, ProductSummary::getName));
+    }
+
+    private static Map<Long, String> categoryNames(List<Category> categories) {
+        return categories.stream().filter(c -> c.getName() != null)
+                .collect(Collectors.toMap(Category::getId, Category::getName));
+    }
+
+    private long recordWarmup(String source, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        Timer.builder("catalog.warmup")
+                .description("Time to fill the in-memory catalog structures at startup")
+                .tag("source", source)
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        return TimeUnit.NANOSECONDS.toMillis(elapsed);
+    }
+
+    // Runs after the writing transaction commits, so the reload below sees the committed row,
+    // and before the catalog version bump, so responses cached under the new version include it
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Long productId = event.getProductId();
+        if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            removeProduct(productId);
+        } else {
+            productRepository.findById(productId).ifPresentOrElse(this::indexProduct, () -> removeProduct(productId));
+        }
+        // Other nodes take stock-only changes from the level channel
+        if (event.getType() != ProductChangedEvent.Type.STOCK) {
+            publish(List.of(productId), List.of());
+        }
+    }
+
+    // One event per committed import batch
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onProductsImported(ProductsImportedEvent event) {
+        productRepository.findByIdIn(event.getProductIds()).forEach(this::indexProduct);
+        publish(event.getProductIds(), List.of());
+    }
+
+    // Category names are indexed with every product, so a change re-indexes its products
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        Long categoryId = event.getCategoryId();
+        if (event.getType() == CategoryChangedEvent.Type.DELETED) {
+            suggestionIndex.remove(Suggestion.Type.CATEGORY, categoryId);
+        } else {
+            categoryRepository.findById(categoryId).ifPresent(this::indexCategory);
+        }
+        publish(List.of(), List.of(categoryId));
+    }
+
+    private void publish(List<Long> productIds, List<Long> categoryIds) {
+        try {
+            redisTemplate.convertAndSend(INDEX_CHANNEL,
+                    objectMapper.writeValueAsString(new IndexChange(origin, productIds, categoryIds)));
+        } catch (JsonProcessingException | RuntimeException e) {
+            // The other nodes catch up at their next snapshot write, or restart
+            log.warn("Could not publish the re-indexed products {} and categories {}: {}",
+                    productIds, categoryIds, e.getMessage());
+        }
+    }
+
+    private void receiveChange(String message) {
+        IndexChange change;
+        try {
+            change = objectMapper.readValue(message, IndexChange.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed catalog index message: {}", e.getOriginalMessage());
+            return;
+        }
+        if (!origin.equals(change.origin())) {
+            remoteUpdates.execute(() -> applySafely(() -> applyRemote(change)));
+        }
+    }
+
+    // The writing node included: its own index was updated from the same row, so this is a no-op there
+    private void receiveLevel(String message) {
+        try {
+            pendingStock.add(objectMapper.readValue(message, ProductLevel.class).id());
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed product level message: {}", e.getOriginalMessage());
+            return;
+        }
+        remoteUpdates.execute(() -> applySafely(this::applyPendingStock));
+    }
+
+    private void applySafely(Runnable update) {
+        try {
+            update.run();
+        } catch (RuntimeException e) {
+            log.warn("Could not apply a catalog change from another node: {}", e.toString());
+        }
+    }
+
+    // Re-read from the database rather than taken from the message, so a late message cannot
+    // bring back an older state
+    private void applyRemote(IndexChange change) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            for (Long categoryId : change.categoryIds()) {
+                categoryRepository.findById(categoryId).ifPresentOrElse(this::indexCategory,
+                        () -> suggestionIndex.remove(Suggestion.Type.CATEGORY, categoryId));
+            }
+            if (!change.productIds().isEmpty()) {
+                Map<Long, Product> found = productRepository.findByIdIn(change.productIds()).stream()
+                        .collect(Collectors.toMap(Product::getId, Function.identity()));
+                for (Long productId : change.productIds()) {
+                    Product product = found.get(productId);
+                    if (product != null) {
+                        indexProduct(product);
+                    } else {
+                        removeProduct(productId);
+                    }
+                }
+            }
+        });
+    }
+
+    // Levels queued while an earlier batch was read go out with the next one, in a single query
+    private void applyPendingStock() {
+        List<Long> productIds = new ArrayList<>();
+        for (Long productId : pendingStock) {
+            if (pendingStock.remove(productId)) {
+                productIds.add(productId);
+            }
+        }
+        if (!productIds.isEmpty()) {
+            productRepository.findStockLevels(productIds).forEach(this::applyStock);
+        }
+    }
+
+    // Category names are indexed with every product
+    private void indexCategory(Category category) {
+        suggestionIndex.put(Suggestion.Type.CATEGORY, category.getId(), category.getName());
+        for (Product product : productRepository.findByCategoryId(category.getId())) {
+            searchEngine.index(ProductSummary.from(product));
+            touch(product.getId());
+        }
+        searchGeneration.incrementAndGet();
+    }
+
+    private void indexProduct(Product product) {
+        ProductSummary summary = ProductSummary.from(product);
+        searchEngine.index(summary);
+        filterIndex.put(summary);
+        suggestionIndex.put(Suggestion.Type.PRODUCT, product.getId(), product.getName());
+        touch(product.getId());
+        searchGeneration.incrementAndGet();
+    }
+
+    private void removeProduct(Long productId) {
+        searchEngine.remove(productId);
+        filterIndex.remove(productId);
+        suggestionIndex.remove(Suggestion.Type.PRODUCT, productId);
+        touch(productId);
+        searchGeneration.incrementAndGet();
+    }
+}
@@ -0,0 +1,201 @@
+package com.shotx.shop.search;
+
+import com.shotx.shop.model.Category;
+import com.shotx.shop.model.ProductSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Binary snapshot of the catalog on local disk, so a restarted node can fill its in-memory
+ * structures without querying the database.
+ * <p>
+ * Layout (big-endian): magic, format version, change version, write time, then the categories
+ * (id, name), the products (id, name, description, price, category id, primary image URL,
+ * image count, stock) and the search postings in term order (term, count, then product id and
+ * weight per entry). Strings are a byte length (-1 for null) followed by UTF-8. The file is
+ * written to a temporary file and moved into place, and read through a memory-mapped buffer.
+ */
+@Component
+public class CatalogSnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshotStore.class);
+
+    private static final int MAGIC = 0x53484353; // "SHCS"
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * A snapshot read back from disk
+     *
+     * @param changeVersion Change feed version the snapshot contains every change up to
+     * @param writtenAt     Write time, epoch millis
+     * @param categories    Every category
+     * @param products      Every product, sharing the category instances
+     * @param postings      Search posting lists, in term order
+     * @param sizeBytes     File size
+     */
+    public record Snapshot(long changeVersion, long writtenAt, List<Category> categories,
+                           List<ProductSummary> products, SortedMap<String, Map<Long, Float>> postings,
+                           long sizeBytes) {}
+
+    private final Path path;
+
+    public CatalogSnapshotStore(@Value("${shop.catalog-snapshot.path}") String path) {
+        this.path = Paths.get(path);
+    }
+
+    public void write(long changeVersion, Collection<Category> categories, ProductSearchEngine.Contents contents)
+            throws IOException {
+        List<ProductSummary> products = contents.products();
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(changeVersion);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(categories.size());
+                for (Category category : categories) {
+                    out.writeLong(category.getId());
+                    writeString(out, category.getName());
+                }
+                out.writeInt(products.size());
+                for (ProductSummary product : products) {
+                    out.writeLong(product.getId());
+                    writeString(out, product.getName());
+                    writeString(out, product.getDescription());
+                    writeString(out, product.getPrice() == null ? null : product.getPrice().toPlainString());
+                    out.writeLong(product.getCategory() == null || product.getCategory().getId() == null
+                            ? -1 : product.getCategory().getId());
+                    writeString(out, product.getImageUrl());
+                    out.writeInt(product.getImageCount());
+                    out.writeInt(product.getStock() == null ? 0 : product.getStock());
+                }
+                out.writeInt(contents.postings().size());
+                for (Map.Entry<String, Map<Long, Float>> posting : contents.postings().entrySet()) {
+                    writeString(out, posting.getKey());
+                    out.writeInt(posting.getValue().size());
+                    for (Map.Entry<Long, Float> entry : posting.getValue().entrySet()) {
+                        out.writeLong(entry.getKey());
+                        out.writeFloat(entry.getValue());
+                    }
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return The snapshot, or empty when there is none or it cannot be read
+     */
+    public Optional<Snapshot> read() {
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                log.warn("Ignoring catalog snapshot {}: unknown format", path);
+                return Optional.empty();
+            }
+            long changeVersion = buffer.getLong();
+            long writtenAt = buffer.getLong();
+
+            int categoryCount = buffer.getInt();
+            List<Category> categories = new ArrayList<>(categoryCount);
+            Map<Long, Category> categoriesById = new HashMap<>(categoryCount * 2);
+            for (int i = 0; i < categoryCount; i++) {
+                Category category = new Category();
+                category.setId(buffer.getLong());
+                category.setName(readString(buffer));
+                categories.add(category);
+                categoriesById.put(category.getId(), category);
+            }
+
+            int productCount = buffer.getInt();
+            List<ProductSummary> products = new ArrayList<>(productCount);
+            for (int i = 0; i < productCount; i++) {
+                ProductSummary product = new ProductSummary();
+                product.setId(buffer.getLong());
+                product.setName(readString(buffer));
+                product.setDescription(readString(buffer));
+                String price = readString(buffer);
+                product.setPrice(price == null ? null : new BigDecimal(price));
+                product.setCategory(categoriesById.get(buffer.getLong()));
+                product.setImageUrl(readString(buffer));
+                product.setImageCount(buffer.getInt());
+                product.setStock(buffer.getInt());
+                products.add(product);
+            }
+
+            // Appended in term order, so the tree map below is filled in order
+            int termCount = buffer.getInt();
+            SortedMap<String, Map<Long, Float>> postings = new TreeMap<>();
+            for (int i = 0; i < termCount; i++) {
+                String term = readString(buffer);
+                int entries = buffer.getInt();
+                Map<Long, Float> posting = new HashMap<>(Math.max(4, entries * 2));
+                for (int j = 0; j < entries; j++) {
+                    posting.put(buffer.getLong(), buffer.getFloat());
+                }
+                postings.put(term, posting);
+            }
+            return Optional.of(new Snapshot(changeVersion, writtenAt, categories, products, postings, size));
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            log.warn("Ignoring unreadable catalog snapshot {}: {}", path, e.toString());
+            return Optional.empty();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("String length " + length + " past the end of the snapshot");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
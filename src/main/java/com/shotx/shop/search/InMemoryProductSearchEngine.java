@@ -0,0 +1,281 @@
+package com.shotx.shop.search;
+
+import com.shotx.shop.model.ProductSummary;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over product name, description and category name kept on the heap.
+ * <p>
+ * Terms are stored in a sorted map so a query term also matches every indexed token it is a
+ * prefix of. A product's score is the sum, over all query terms, of the best field weight the
+ * term matched; prefix matches count for less than exact ones.
+ * <p>
+ * Per-category product counts are maintained alongside the documents so catalog-wide facets
+ * cost nothing to read.
+ */
+@Component
+public class InMemoryProductSearchEngine implements ProductSearchEngine {
+
+    private static final float NAME_WEIGHT = 3f;
+    private static final float CATEGORY_WEIGHT = 2f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    private static final double PREFIX_FACTOR = 0.5;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private final Map<Long, Integer> categoryCounts = new HashMap<>();
+
+    @Override
+    public void rebuild(Collection<ProductSummary> products) {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            categoryCounts.clear();
+            for (ProductSummary product : products) {
+                add(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void index(ProductSummary product) {
+        lock.writeLock().lock();
+        try {
+            delete(product.getId());
+            add(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            delete(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<SearchHit> search(String query, Collection<Long> categoryIds) {
+        List<String> terms = SearchTokenizer.tokenize(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> categoryFilter = categoryIds == null || categoryIds.isEmpty() ? null : new HashSet<>(categoryIds);
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String term : new LinkedHashSet<>(terms)) {
+                Map<Long, Double> termScores = match(term);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    Map<Long, Double> combined = new HashMap<>();
+                    for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                        Double termScore = termScores.get(entry.getKey());
+                        if (termScore != null) {
+                            combined.put(entry.getKey(), entry.getValue() + termScore);
+                        }
+                    }
+                    scores = combined;
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            List<SearchHit> hits = new ArrayList<>(scores.size());
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                if (categoryFilter == null || categoryFilter.contains(documents.get(entry.getKey()).categoryId)) {
+                    hits.add(new SearchHit(entry.getKey(), entry.getValue()));
+                }
+            }
+            hits.sort(Comparator.comparingDouble(SearchHit::getScore).reversed()
+                    .thenComparing(SearchHit::getProductId));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<Long, Integer> facetCounts(String query) {
+        if (SearchTokenizer.tokenize(query).isEmpty()) {
+            lock.readLock().lock();
+            try {
+                return new HashMap<>(categoryCounts);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        List<SearchHit> hits = search(query, null);
+        Map<Long, Integer> counts = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (SearchHit hit : hits) {
+                Document document = documents.get(hit.getProductId());
+                if (document != null && document.categoryId != null) {
+                    counts.merge(document.categoryId, 1, Integer::sum);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    @Override
+    public Optional<ProductSummary> getDocument(Long productId) {
+        lock.readLock().lock();
+        try {
+            Document document = documents.get(productId);
+            return document == null ? Optional.empty() : Optional.of(document.product);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ProductSummary> getDocuments() {
+        lock.readLock().lock();
+        try {
+            List<ProductSummary> products = new ArrayList<>(documents.size());
+            documents.values().forEach(document -> products.add(document.product));
+            return products;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Contents getContents() {
+        lock.readLock().lock();
+        try {
+            List<ProductSummary> products = new ArrayList<>(documents.size());
+            documents.values().forEach(document -> products.add(document.product));
+            SortedMap<String, Map<Long, Float>> copy = new TreeMap<>();
+            postings.forEach((term, posting) -> copy.put(term, new HashMap<>(posting)));
+            return new Contents(products, copy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The per-document terms needed to delete a product later are the posting lists transposed
+    @Override
+    public void restore(Contents contents) {
+        Map<Long, Map<String, Float>> termsByProduct = new HashMap<>();
+        contents.postings().forEach((term, posting) -> posting.forEach((productId, weight) ->
+                termsByProduct.computeIfAbsent(productId, id -> new HashMap<>()).put(term, weight)));
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            categoryCounts.clear();
+            for (ProductSummary product : contents.products()) {
+                Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+                Map<String, Float> terms = termsByProduct.getOrDefault(product.getId(), new HashMap<>());
+                documents.put(product.getId(), new Document(product, categoryId, terms));
+                if (categoryId != null) {
+                    categoryCounts.merge(categoryId, 1, Integer::sum);
+                }
+            }
+            // Linear for a sorted map into an empty one
+            postings.putAll(contents.postings());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Best weight per product for a single query term, over every token the term is a prefix of
+    private Map<Long, Double> match(String term) {
+        Map<Long, Double> termScores = new HashMap<>();
+        Map<String, Map<Long, Float>> matching = postings.subMap(term, true, term + Character.MAX_VALUE, true);
+        for (Map.Entry<String, Map<Long, Float>> entry : matching.entrySet()) {
+            double factor = entry.getKey().equals(term) ? 1.0 : PREFIX_FACTOR;
+            entry.getValue().forEach((productId, weight) ->
+                    termScores.merge(productId, weight * factor, Math::max));
+        }
+        return termScores;
+    }
+
+    private void add(ProductSummary product) {
+        Map<String, Float> terms = new HashMap<>();
+        addField(terms, product.getName(), NAME_WEIGHT);
+        addField(terms, product.getDescription(), DESCRIPTION_WEIGHT);
+        Long categoryId = null;
+        if (product.getCategory() != null) {
+            categoryId = product.getCategory().getId();
+            addField(terms, product.getCategory().getName(), CATEGORY_WEIGHT);
+        }
+
+        documents.put(product.getId(), new Document(product, categoryId, terms));
+        if (categoryId != null) {
+            categoryCounts.merge(categoryId, 1, Integer::sum);
+        }
+        terms.forEach((term, weight) ->
+                postings.computeIfAbsent(term, t -> new HashMap<>()).put(product.getId(), weight));
+    }
+
+    private void delete(Long productId) {
+        Document document = documents.remove(productId);
+        if (document == null) {
+            return;
+        }
+        if (document.categoryId != null) {
+            categoryCounts.computeIfPresent(document.categoryId, (id, count) -> count > 1 ? count - 1 : null);
+        }
+        for (String term : document.terms.keySet()) {
+            Map<Long, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(productId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    // A token counts once per field, fields add up
+    private static void addField(Map<String, Float> terms, String text, float weight) {
+        for (String token : new HashSet<>(SearchTokenizer.tokenize(text))) {
+            terms.merge(token, weight, Float::sum);
+        }
+    }
+
+    private static class Document {
+        private final ProductSummary product;
+        private final Long categoryId;
+        private final Map<String, Float> terms;
+
+        private Document(ProductSummary product, Long categoryId, Map<String, Float> terms) {
+            this.product = product;
+            this.categoryId = categoryId;
+            this.terms = terms;
+        }
+    }
+}
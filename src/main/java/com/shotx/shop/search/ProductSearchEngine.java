@@ -0,0 +1,79 @@
+package com.shotx.shop.search;
+
+import com.shotx.shop.model.ProductSummary;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+
+/**
+ * Full-text product search that answers queries without going to the database.
+ * Implementations are fed by {@link CatalogIndexer}.
+ */
+public interface ProductSearchEngine {
+
+    /**
+     * Replace the whole index with the given products.
+     */
+    void rebuild(Collection<ProductSummary> products);
+
+    /**
+     * Add a product to the index, replacing any previous version of it.
+     */
+    void index(ProductSummary product);
+
+    /**
+     * Drop a product from the index. Unknown ids are ignored.
+     */
+    void remove(Long productId);
+
+    /**
+     * Search the index.
+     *
+     * @param query       Free text; every term must match a name, description or category token
+     *                    (the last characters of a term may be left off, prefixes match too)
+     * @param categoryIds Optional category filter, null or empty means all categories
+     * @return Hits ordered by descending relevance
+     */
+    List<SearchHit> search(String query, Collection<Long> categoryIds);
+
+    /**
+     * Number of products per category id.
+     *
+     * @param query Free text; when empty the counts cover the whole catalog, otherwise only the
+     *              products matching the query (regardless of any category filter)
+     */
+    Map<Long, Integer> facetCounts(String query);
+
+    /**
+     * The indexed copy of a product.
+     */
+    Optional<ProductSummary> getDocument(Long productId);
+
+    /**
+     * A copy of every indexed product, in no particular order.
+     */
+    List<ProductSummary> getDocuments();
+
+    /**
+     * A copy of every indexed product and of the posting lists built from them, taken under one
+     * lock, for the catalog snapshot.
+     */
+    Contents getContents();
+
+    /**
+     * Replace the whole index with contents returned by {@link #getContents()}, without
+     * tokenizing anything.
+     */
+    void restore(Contents contents);
+
+    /**
+     * Indexed products and their posting lists
+     *
+     * @param products Every indexed product
+     * @param postings Product id to term weight per term, in term order
+     */
+    record Contents(List<ProductSummary> products, SortedMap<String, Map<Long, Float>> postings) {}
+}
@@ -0,0 +1,23 @@
+package com.shotx.shop.search;
+
+/**
+ * A single search result: the matching product id and its relevance score.
+ */
+public class SearchHit {
+
+    private final Long productId;
+    private final double score;
+
+    public SearchHit(Long productId, double score) {
+        this.productId = productId;
+        this.score = score;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,34 @@
+package com.shotx.shop.search;
+
+/**
+ * A typeahead completion: the product or category name and what it points to.
+ */
+public class Suggestion {
+
+    public enum Type {
+        PRODUCT,
+        CATEGORY
+    }
+
+    private final String text;
+    private final Type type;
+    private final Long id;
+
+    public Suggestion(String text, Type type, Long id) {
+        this.text = text;
+        this.type = type;
+        this.id = id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
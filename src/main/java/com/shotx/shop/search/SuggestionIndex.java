@@ -0,0 +1,287 @@
+package com.shotx.shop.search;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Prefix index over product and category names for typeahead.
+ * <p>
+ * Every name is normalized once and indexed at each word start, so "pro" completes both
+ * "Pro Controller" and "iPhone 15 Pro". The entries are a sorted pair of parallel arrays
+ * (name, offset) - effectively a word-level suffix array - which a lookup binary searches and
+ * then scans. Readers use an immutable snapshot without locking; writers merge or filter the
+ * arrays of a single name into a new snapshot, which is linear in the index size but never
+ * re-sorts it, and is skipped when the name did not change.
+ * <p>
+ * A lookup ranks every entry starting with the prefix, keeping the best few in a bounded heap,
+ * so the answer is the global top-N even for one-letter prefixes. Its cost is linear in the
+ * number of such entries (a few thousand for a single letter on a large catalog), not in the
+ * index size.
+ */
+@Component
+public class SuggestionIndex {
+
+    // Best match first: whole-name prefix before word prefix, then shorter names
+    private static final Comparator<Entry> RANK = Comparator.comparing((Entry e) -> e.offset > 0)
+            .thenComparingInt(e -> e.name.normalized.length())
+            .thenComparing(e -> e.name.normalized)
+            .thenComparing(e -> e.name.type)
+            .thenComparing(e -> e.name.id);
+
+    private volatile Snapshot snapshot = new Snapshot(new Name[0], new int[0]);
+    // Display name per indexed name, to tell renames from other product updates; guarded by this
+    private final Map<Name, String> displayNames = new HashMap<>();
+
+    /**
+     * Replace the index contents.
+     *
+     * @param products   Product id to name
+     * @param categories Category id to name
+     */
+    public synchronized void rebuild(Map<Long, String> products, Map<Long, String> categories) {
+        List<Entry> entries = new ArrayList<>();
+        displayNames.clear();
+        products.forEach((id, name) -> entries.addAll(entriesOf(index(new Name(Suggestion.Type.PRODUCT, id, name)))));
+        categories.forEach((id, name) -> entries.addAll(entriesOf(index(new Name(Suggestion.Type.CATEGORY, id, name)))));
+        entries.sort(Entry.ORDER);
+        snapshot = Snapshot.of(entries);
+    }
+
+    /**
+     * Index a name, replacing the previous one; does nothing when the name is unchanged
+     */
+    public synchronized void put(Suggestion.Type type, Long id, String name) {
+        Name key = new Name(type, id, name);
+        if (Objects.equals(displayNames.get(key), name)) {
+            return;
+        }
+        Snapshot current = without(snapshot, type, id);
+        if (name == null) {
+            displayNames.remove(key);
+            snapshot = current;
+            return;
+        }
+        List<Entry> added = entriesOf(index(key));
+        added.sort(Entry.ORDER);
+        snapshot = current.merge(added);
+    }
+
+    public synchronized void remove(Suggestion.Type type, Long id) {
+        if (displayNames.remove(new Name(type, id, null)) != null) {
+            snapshot = without(snapshot, type, id);
+        }
+    }
+
+    private Name index(Name name) {
+        displayNames.put(name, name.display);
+        return name;
+    }
+
+    /**
+     * Completions for a prefix: names starting with it first, then names with a word starting
+     * with it, shorter names before longer ones.
+     *
+     * @param prefix What the user has typed so far
+     * @param limit  Maximum number of suggestions
+     * @return Distinct suggestions, best first
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String normalized = SearchTokenizer.normalize(prefix);
+        if (normalized.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        Snapshot current = snapshot;
+
+        // A name ranks the same at every word offset, so it holds at most two heap slots (whole-name
+        // and word match) and the best 2 * limit entries always cover the best limit names
+        int capacity = 2 * limit;
+        PriorityQueue<Entry> best = new PriorityQueue<>(capacity + 1, RANK.reversed());
+        Set<Tier> held = new HashSet<>();
+        int start = current.lowerBound(normalized);
+        for (int i = start; i < current.size() && current.startsWith(i, normalized); i++) {
+            Entry entry = new Entry(current.names[i], current.offsets[i]);
+            if (!held.add(Tier.of(entry))) {
+                continue;
+            }
+            best.add(entry);
+            if (best.size() > capacity) {
+                held.remove(Tier.of(best.poll()));
+            }
+        }
+        List<Entry> matches = new ArrayList<>(best);
+        matches.sort(RANK);
+
+        List<Suggestion> suggestions = new ArrayList<>(limit);
+        Set<Name> seen = new HashSet<>();
+        for (Entry match : matches) {
+            if (suggestions.size() == limit) {
+                break;
+            }
+            if (seen.add(match.name)) {
+                suggestions.add(new Suggestion(match.name.display, match.name.type, match.name.id));
+            }
+        }
+        return suggestions;
+    }
+
+    private static Snapshot without(Snapshot current, Suggestion.Type type, Long id) {
+        List<Entry> kept = new ArrayList<>(current.size());
+        for (int i = 0; i < current.size(); i++) {
+            Name name = current.names[i];
+            if (name.type != type || !name.id.equals(id)) {
+                kept.add(new Entry(name, current.offsets[i]));
+            }
+        }
+        return kept.size() == current.size() ? current : Snapshot.of(kept);
+    }
+
+    private static List<Entry> entriesOf(Name name) {
+        List<Entry> entries = new ArrayList<>();
+        String normalized = name.normalized;
+        for (int i = 0; i < normalized.length(); i++) {
+            if (i == 0 || normalized.charAt(i - 1) == ' ') {
+                entries.add(new Entry(name, i));
+            }
+        }
+        return entries;
+    }
+
+    // Compare the suffix of a name starting at offset with a prefix, looking at most prefix.length() chars
+    private static int compareSuffix(String text, int offset, String prefix) {
+        int length = Math.min(text.length() - offset, prefix.length());
+        for (int i = 0; i < length; i++) {
+            int diff = text.charAt(offset + i) - prefix.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (text.length() - offset) - length == 0 && length < prefix.length() ? -1 : 0;
+    }
+
+    private static final class Name {
+        private final Suggestion.Type type;
+        private final Long id;
+        private final String display;
+        private final String normalized;
+
+        private Name(Suggestion.Type type, Long id, String display) {
+            this.type = type;
+            this.id = id;
+            this.display = display;
+            this.normalized = display == null ? "" : SearchTokenizer.normalize(display);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Name other && type == other.type && id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + id.hashCode();
+        }
+    }
+
+    private record Tier(Name name, boolean wordMatch) {
+        static Tier of(Entry entry) {
+            return new Tier(entry.name, entry.offset > 0);
+        }
+    }
+
+    private static final class Entry {
+        private static final Comparator<Entry> ORDER = (a, b) -> {
+            String x = a.name.normalized;
+            String y = b.name.normalized;
+            int i = a.offset;
+            int j = b.offset;
+            while (i < x.length() && j < y.length()) {
+                int diff = x.charAt(i++) - y.charAt(j++);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return (x.length() - i) - (y.length() - j);
+        };
+
+        private final Name name;
+        private final int offset;
+
+        private Entry(Name name, int offset) {
+            this.name = name;
+            this.offset = offset;
+        }
+    }
+
+    private static final class Snapshot {
+        private final Name[] names;
+        private final int[] offsets;
+
+        private Snapshot(Name[] names, int[] offsets) {
+            this.names = names;
+            this.offsets = offsets;
+        }
+
+        private static Snapshot of(List<Entry> sorted) {
+            Name[] names = new Name[sorted.size()];
+            int[] offsets = new int[sorted.size()];
+            for (int i = 0; i < sorted.size(); i++) {
+                names[i] = sorted.get(i).name;
+                offsets[i] = sorted.get(i).offset;
+            }
+            return new Snapshot(names, offsets);
+        }
+
+        private int size() {
+            return names.length;
+        }
+
+        // Two-way merge of a small sorted batch into the existing entries
+        private Snapshot merge(List<Entry> added) {
+            Name[] mergedNames = new Name[names.length + added.size()];
+            int[] mergedOffsets = new int[mergedNames.length];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < mergedNames.length; k++) {
+                if (j < added.size() && (i == names.length
+                        || Entry.ORDER.compare(added.get(j), new Entry(names[i], offsets[i])) < 0)) {
+                    mergedNames[k] = added.get(j).name;
+                    mergedOffsets[k] = added.get(j).offset;
+                    j++;
+                } else {
+                    mergedNames[k] = names[i];
+                    mergedOffsets[k] = offsets[i];
+                    i++;
+                }
+            }
+            return new Snapshot(mergedNames, mergedOffsets);
+        }
+
+        // First entry whose suffix is not smaller than the prefix
+        private int lowerBound(String prefix) {
+            int low = 0;
+            int high = names.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareSuffix(names[mid].normalized, offsets[mid], prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private boolean startsWith(int index, String prefix) {
+            return names[index].normalized.startsWith(prefix, offsets[index]);
+        }
+    }
+}
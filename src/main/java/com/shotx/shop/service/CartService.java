@@ -1,20 +1,51 @@
 package com.shotx.shop.service;
 
+import com.shotx.shop.cache.CartPricingCache;
+import com.shotx.shop.cart.CartOwner;
+import com.shotx.shop.cart.CartStore;
+import com.shotx.shop.cart.GuestCartStore;
 import com.shotx.shop.model.Cart;
 import com.shotx.shop.model.CartItem;
-import com.shotx.shop.repository.CartRepository;
+import com.shotx.shop.model.CartItemOperation;
+import com.shotx.shop.model.PricedCart;
+import com.shotx.shop.model.ProductSummary;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 @Service
 public class CartService {
 
-    private final CartRepository cartRepository;
+    // Optimistic retries of a bulk update against concurrent changes to the same cart
+    private static final int MAX_APPLY_ATTEMPTS = 3;
+
+    private final CartStore cartStore;
+    private final GuestCartStore guestCartStore;
     private final ProductService productService;
+    private final CartPricingCache cartPricingCache;
+    private final TransactionTemplate transactionTemplate;
 
-    public CartService(CartRepository cartRepository, ProductService productService) {
-        this.cartRepository = cartRepository;
+    public CartService(CartStore cartStore,
+                       GuestCartStore guestCartStore,
+                       ProductService productService,
+                       CartPricingCache cartPricingCache,
+                       PlatformTransactionManager transactionManager) {
+        this.cartStore = cartStore;
+        this.guestCartStore = guestCartStore;
         this.productService = productService;
+        this.cartPricingCache = cartPricingCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -23,71 +54,282 @@ public class CartService {
      */
     @Transactional
     public Cart getOrCreateCart(String username) {
-        Cart cart = cartRepository.findByUsername(username);
-        if (cart == null) {
-            cart = new Cart(username);
-            cart = cartRepository.save(cart);
-        }
-        return cart;
+        return getOrCreateCart(CartOwner.user(username));
+    }
+
+    public Cart getOrCreateCart(CartOwner owner) {
+        return inTransaction(owner, () -> storeOf(owner).getCart(owner.id()));
+    }
+
+    /**
+     * The owner's cart for display, read without locking it; created if there is none.
+     */
+    public Cart getCart(CartOwner owner) {
+        return inTransaction(owner, () -> storeOf(owner).readCart(owner.id()));
     }
 
     @Transactional
     public Cart addOrUpdateCartItem(String username, Long productId, int quantity) {
+        return addOrUpdateCartItem(CartOwner.user(username), productId, quantity);
+    }
+
+    public Cart addOrUpdateCartItem(CartOwner owner, Long productId, int quantity) {
         // Validate quantity
         if (quantity < 1) {
             throw new IllegalArgumentException("Quantity must be at least 1");
         }
 
-        // Check if there's enough stock
-        if (!productService.checkStock(productId, quantity)) {
-            throw new IllegalArgumentException("Not enough stock available for this product");
-        }
-
-        Cart cart = getOrCreateCart(username);
-        // Check if an item for the product already exists.
-        CartItem existingItem = cart.getItems().stream()
-                .filter(item -> item.getProductId().equals(productId))
-                .findFirst()
-                .orElse(null);
+        return inTransaction(owner, () -> {
+            // Check if there's enough stock
+            if (!inStock(owner, productId, quantity)) {
+                throw new IllegalArgumentException("Not enough stock available for this product");
+            }
 
-        if (existingItem != null) {
-            // Check if the total quantity (existing + new) exceeds available stock
-            if (!productService.checkStock(productId, existingItem.getQuantity() + quantity)) {
+            // Add first, then check the total: the store applies the increment atomically,
+            // so concurrent adds cannot both pass the check on a stale quantity
+            CartStore store = storeOf(owner);
+            int total = store.addQuantity(owner.id(), productId, quantity);
+            if (total > quantity && !inStock(owner, productId, total)) {
+                store.addQuantity(owner.id(), productId, -quantity);
                 throw new IllegalArgumentException("Adding this quantity would exceed available stock");
             }
-            existingItem.setQuantity(existingItem.getQuantity() + quantity);
-        } else {
-            CartItem newItem = new CartItem(productId, quantity, cart);
-            cart.getItems().add(newItem);
-        }
 
-        return cartRepository.save(cart);
+            return store.getCart(owner.id());
+        });
     }
 
     @Transactional
     public Cart removeCartItem(String username, Long productId) {
-        Cart cart = getOrCreateCart(username);
-        cart.getItems().removeIf(item -> item.getProductId().equals(productId));
-        return cartRepository.save(cart);
+        return removeCartItem(CartOwner.user(username), productId);
+    }
+
+    public Cart removeCartItem(CartOwner owner, Long productId) {
+        return inTransaction(owner, () -> {
+            CartStore store = storeOf(owner);
+            store.removeItem(owner.id(), productId);
+            return store.getCart(owner.id());
+        });
     }
 
     @Transactional
     public Cart updateCartItem(String username, Long productId, int quantity) {
+        return updateCartItem(CartOwner.user(username), productId, quantity);
+    }
+
+    public Cart updateCartItem(CartOwner owner, Long productId, int quantity) {
         if (quantity < 1) {
             throw new IllegalArgumentException("Quantity must be at least 1");
         }
 
-        // Check if there's enough stock for the requested quantity
-        if (!productService.checkStock(productId, quantity)) {
-            throw new IllegalArgumentException("Not enough stock available for this product");
+        return inTransaction(owner, () -> {
+            // Check if there's enough stock for the requested quantity
+            if (!inStock(owner, productId, quantity)) {
+                throw new IllegalArgumentException("Not enough stock available for this product");
+            }
+
+            CartStore store = storeOf(owner);
+            store.setQuantity(owner.id(), productId, quantity);
+            return store.getCart(owner.id());
+        });
+    }
+
+    /**
+     * Apply several cart changes at once, in order. The resulting quantities are checked
+     * against stock with one query and written together; if any operation is invalid or any
+     * product lacks stock, nothing is changed.
+     *
+     * @param owner      Cart owner
+     * @param operations Changes to apply
+     * @return The updated cart
+     */
+    public Cart applyOperations(CartOwner owner, List<CartItemOperation> operations) {
+        for (CartItemOperation operation : operations) {
+            if (operation.getProductId() == null || operation.getOp() == null) {
+                throw new IllegalArgumentException("Every operation needs a productId and an op");
+            }
+            if (operation.getOp() != CartItemOperation.Op.REMOVE
+                    && (operation.getQuantity() == null || operation.getQuantity() < 1)) {
+                throw new IllegalArgumentException("Quantity must be at least 1");
+            }
         }
 
-        Cart cart = getOrCreateCart(username);
-        cart.getItems().stream()
-                .filter(item -> item.getProductId().equals(productId))
-                .findFirst()
-                .ifPresent(item -> item.setQuantity(quantity));
+        return inTransaction(owner, () -> applyValidated(owner, operations));
+    }
+
+    private Cart applyValidated(CartOwner owner, List<CartItemOperation> operations) {
+        CartStore store = storeOf(owner);
+        for (int attempt = 0; attempt < MAX_APPLY_ATTEMPTS; attempt++) {
+            Cart cart = store.getCart(owner.id());
+            Map<Long, Integer> current = quantitiesOf(cart);
+
+            Map<Long, Integer> result = new HashMap<>(current);
+            for (CartItemOperation operation : operations) {
+                switch (operation.getOp()) {
+                    case ADD -> result.merge(operation.getProductId(), operation.getQuantity(), Integer::sum);
+                    case SET -> result.put(operation.getProductId(), operation.getQuantity());
+                    case REMOVE -> result.remove(operation.getProductId());
+                }
+            }
+
+            Map<Long, Integer> changes = changes(current, result);
+            if (changes.isEmpty()) {
+                return cart;
+            }
 
-        return cartRepository.save(cart);
+            List<Long> stocked = changes.entrySet().stream()
+                    .filter(change -> change.getValue() > 0)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            Map<Long, Integer> stock = productService.getStockLevels(stocked);
+            for (Long productId : stocked) {
+                Integer available = stock.get(productId);
+                if (available == null) {
+                    throw new IllegalArgumentException("Product not found: " + productId);
+                }
+                if (available < changes.get(productId)) {
+                    throw new IllegalArgumentException("Not enough stock available for product: " + productId);
+                }
+            }
+
+            if (store.applyQuantities(owner.id(), cart, changes)) {
+                return store.getCart(owner.id());
+            }
+        }
+        throw new IllegalStateException("The cart was changed concurrently, please retry");
+    }
+
+    /**
+     * The cart priced at current catalog prices, with stock availability per line. Products are
+     * read with one query and the pricing is memoized per cart contents and catalog structure
+     * version; stock is not versioned, so the levels are read from the product rows on every call,
+     * in one query.
+     *
+     * @param owner Cart owner
+     * @return The priced cart
+     */
+    public PricedCart getPricedCart(CartOwner owner) {
+        Cart cart = getCart(owner);
+        List<CartItem> items = List.copyOf(cart.getItems());
+        PricedCart prices = cartPricingCache.get(items, () -> price(items));
+        Map<Long, Integer> stock = productService.getStockLevels(
+                items.stream().map(CartItem::getProductId).distinct().toList());
+        return prices.withStock(stock::get);
+    }
+
+    // Prices only: stock and availability are left for withStock
+
+    private PricedCart price(List<CartItem> items) {
+        Map<Long, ProductSummary> products = new HashMap<>();
+        productService.getSummaries(items.stream().map(CartItem::getProductId).distinct().toList())
+                .forEach(product -> products.put(product.getId(), product));
+
+        List<PricedCart.Line> lines = new ArrayList<>(items.size());
+        BigDecimal subtotal = BigDecimal.ZERO;
+        int itemCount = 0;
+        for (CartItem item : items) {
+            int quantity = item.getQuantity();
+            itemCount += quantity;
+            ProductSummary product = products.get(item.getProductId());
+            if (product == null) {
+                lines.add(new PricedCart.Line(item.getProductId(), null, null, quantity, null, null, null, false, true));
+                continue;
+            }
+            BigDecimal lineTotal = product.getPrice().multiply(BigDecimal.valueOf(quantity));
+            lines.add(new PricedCart.Line(product.getId(), product.getName(), product.getImageUrl(), quantity,
+                    product.getPrice(), lineTotal, null, false, false));
+            subtotal = subtotal.add(lineTotal);
+        }
+        return new PricedCart(List.copyOf(lines), subtotal, itemCount, false);
+    }
+
+    public String newGuestCartToken() {
+        return guestCartStore.newToken();
+    }
+
+    /**
+     * Move a guest cart into the user's cart, adding up quantities of products in both and
+     * capping them at the available stock; products that no longer exist are dropped. The guest
+     * cart is taken out of Redis in one step, so it is merged at most once, and put back if the
+     * merge does not commit.
+     *
+     * @param token    Guest cart token
+     * @param username User who just signed in
+     */
+    @Transactional
+    public void mergeGuestCart(String token, String username) {
+        Map<Long, Integer> guest = guestCartStore.take(token);
+        if (guest.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    guestCartStore.restore(token, guest);
+                }
+            }
+        });
+
+        Map<Long, Integer> stock = productService.getStockLevels(guest.keySet());
+        for (int attempt = 0; attempt < MAX_APPLY_ATTEMPTS; attempt++) {
+            Cart cart = cartStore.getCart(username);
+            Map<Long, Integer> current = quantitiesOf(cart);
+            Map<Long, Integer> result = new HashMap<>(current);
+            guest.forEach((productId, quantity) -> {
+                Integer available = stock.get(productId);
+                if (available != null) {
+                    result.put(productId, Math.min(current.getOrDefault(productId, 0) + quantity,
+                            Math.max(available, current.getOrDefault(productId, 0))));
+                }
+            });
+
+            Map<Long, Integer> changes = changes(current, result);
+            if (changes.isEmpty() || cartStore.applyQuantities(username, cart, changes)) {
+                return;
+            }
+        }
+        throw new IllegalStateException("The cart was changed concurrently, please retry");
+    }
+
+    private CartStore storeOf(CartOwner owner) {
+        return owner.guest() ? guestCartStore : cartStore;
+    }
+
+    // Guest carts live in Redis only, so their changes run without a database transaction
+    private <T> T inTransaction(CartOwner owner, Supplier<T> work) {
+        return owner.guest() ? work.get() : transactionTemplate.execute(status -> work.get());
+    }
+
+    // Guests are checked with a two-column primary key read, without loading the product; the
+    // in-memory index lags behind writes on other nodes. Orders re-check either way.
+    private boolean inStock(CartOwner owner, Long productId, int quantity) {
+        if (!owner.guest()) {
+            return productService.checkStock(productId, quantity);
+        }
+        Integer stock = productService.getStockLevels(List.of(productId)).get(productId);
+        if (stock == null) {
+            throw new RuntimeException("Product not found");
+        }
+        return stock >= quantity;
+    }
+
+    private static Map<Long, Integer> quantitiesOf(Cart cart) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        cart.getItems().forEach(item -> quantities.put(item.getProductId(), item.getQuantity()));
+        return quantities;
+    }
+
+    // Only the lines that end up different are written; removed lines become zero
+    private static Map<Long, Integer> changes(Map<Long, Integer> current, Map<Long, Integer> result) {
+        Map<Long, Integer> changes = new LinkedHashMap<>();
+        result.forEach((productId, quantity) -> {
+            if (!quantity.equals(current.get(productId))) {
+                changes.put(productId, quantity);
+            }
+        });
+        current.keySet().stream()
+                .filter(productId -> !result.containsKey(productId))
+                .forEach(productId -> changes.put(productId, 0));
+        return changes;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,153 @@
+package com.shotx.shop.service;
+
+import com.shotx.shop.model.CatalogChanges;
+import com.shotx.shop.model.Category;
+import com.shotx.shop.model.ProductSummary;
+import com.shotx.shop.repository.CategoryRepository;
+import com.shotx.shop.repository.ProductImageRepository;
+import com.shotx.shop.repository.ProductRepository;
+import com.shotx.shop.sync.CatalogChangeLog;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Catalog delta feed. Every catalog row carries the version of its last write and every
+ * deletion leaves a tombstone, so a client holding a copy of the catalog only reads what
+ * changed since its last sync.
+ * <p>
+ * The feed is ordered by (version, source, id), where the sources are categories, products,
+ * images and tombstones in that order, so a page can end in the middle of a large version
+ * (an import batch, or the initial sync from version 0) and the next page resumes after it.
+ * <p>
+ * Product rows carry no stock: stock-only writes take no version, so a level read with the row
+ * would go stale without the row ever showing up again. Clients take stock levels from
+ * {@code /products/stream}, which sends the current levels first and then every change.
+ */
+@Service
+public class CatalogChangeService {
+
+    private static final int CATEGORIES = 0;
+    private static final int PRODUCTS = 1;
+    private static final int IMAGES = 2;
+    private static final int TOMBSTONES = 3;
+
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final ProductImageRepository productImageRepository;
+    private final CatalogChangeLog changeLog;
+
+    public CatalogChangeService(CategoryRepository categoryRepository,
+                                ProductRepository productRepository,
+                                ProductImageRepository productImageRepository,
+                                CatalogChangeLog changeLog) {
+        this.categoryRepository = categoryRepository;
+        this.productRepository = productRepository;
+        this.productImageRepository = productImageRepository;
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * Position in the feed: everything up to (version, source, id) has been read. A bare
+     * version means the whole version has been read.
+     */
+    private record Position(long version, int source, long id) {
+
+        static Position parse(String token) {
+            if (token == null || token.isBlank()) {
+                return new Position(0, TOMBSTONES, Long.MAX_VALUE);
+            }
+            try {
+                String[] parts = token.split("\\.");
+                if (parts.length == 1) {
+                    return new Position(Long.parseLong(parts[0]), TOMBSTONES, Long.MAX_VALUE);
+                }
+                if (parts.length == 3) {
+                    int source = Integer.parseInt(parts[1]);
+                    if (source >= CATEGORIES && source <= TOMBSTONES) {
+                        return new Position(Long.parseLong(parts[0]), source, Long.parseLong(parts[2]));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("Invalid since: " + token);
+        }
+
+        // Last id of the source already read within this version
+        long afterIdIn(int source) {
+            if (source < this.source) {
+                return Long.MAX_VALUE;
+            }
+            return source == this.source ? id : Long.MIN_VALUE;
+        }
+
+        String token() {
+            return source == TOMBSTONES && id == Long.MAX_VALUE
+                    ? String.valueOf(version)
+                    : version + "." + source + "." + id;
+        }
+    }
+
+    private record Change(Position position, Object row) {}
+
+    /**
+     * Rows written and deleted after a feed position
+     *
+     * @param since Catalog version or {@code next} token of the previous page, null to read
+     *              the whole catalog
+     * @param limit Maximum number of rows and tombstones in the page
+     * @return The page, with the position to continue from
+     */
+    @Transactional(readOnly = true)
+    public CatalogChanges getChanges(String since, int limit) {
+        Position from = Position.parse(since);
+        // One extra row per source tells whether anything is left after the page
+        PageRequest fetch = PageRequest.of(0, limit + 1);
+
+        List<Change> changes = new ArrayList<>();
+        categoryRepository.findChangedAfter(from.version(), from.afterIdIn(CATEGORIES), fetch)
+                .forEach(category -> changes.add(new Change(
+                        new Position(category.getUpdatedVersion(), CATEGORIES, category.getId()), category)));
+        productRepository.findChangedAfter(from.version(), from.afterIdIn(PRODUCTS), fetch)
+                .forEach(product -> changes.add(new Change(
+                        new Position(product.getUpdatedVersion(), PRODUCTS, product.getId()),
+                        ProductSummary.from(product).withStock(null))));
+        productImageRepository.findChangedAfter(from.version(), from.afterIdIn(IMAGES), fetch)
+                .forEach(image -> changes.add(new Change(
+                        new Position(image.getUpdatedVersion(), IMAGES, image.getId()),
+                        CatalogChanges.ImageChange.from(image))));
+        changeLog.findDeletions(from.version(), from.afterIdIn(TOMBSTONES), limit + 1)
+                .forEach(tombstone -> changes.add(new Change(
+                        new Position(tombstone.version(), TOMBSTONES, tombstone.sequence()), tombstone)));
+
+        changes.sort(Comparator.comparingLong((Change change) -> change.position().version())
+                .thenComparingInt(change -> change.position().source())
+                .thenComparingLong(change -> change.position().id()));
+        boolean hasMore = changes.size() > limit;
+        List<Change> page = hasMore ? changes.subList(0, limit) : changes;
+
+        List<Category> categories = new ArrayList<>();
+        List<ProductSummary> products = new ArrayList<>();
+        List<CatalogChanges.ImageChange> images = new ArrayList<>();
+        List<CatalogChanges.Tombstone> deleted = new ArrayList<>();
+        for (Change change : page) {
+            switch (change.position().source()) {
+                case CATEGORIES -> categories.add((Category) change.row());
+                case PRODUCTS -> products.add((ProductSummary) change.row());
+                case IMAGES -> images.add((CatalogChanges.ImageChange) change.row());
+                default -> deleted.add((CatalogChanges.Tombstone) change.row());
+            }
+        }
+        Position next = page.isEmpty() ? from : page.get(page.size() - 1).position();
+        // Once caught up, continue from the bare version so the token stays short
+        if (!hasMore && !page.isEmpty()) {
+            next = new Position(next.version(), TOMBSTONES, Long.MAX_VALUE);
+        }
+        return new CatalogChanges(categories, products, images, deleted, next.token(), hasMore);
+    }
+}
@@ -0,0 +1,129 @@
+package com.shotx.shop.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shotx.shop.model.CatalogFileFormat;
+import com.shotx.shop.model.Product;
+import com.shotx.shop.model.ProductSummary;
+import com.shotx.shop.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Writes the whole catalog to a stream for marketplace and price comparison feeds.
+ * Rows are read through a forward-only cursor and detached once written, so memory
+ * use does not depend on the size of the catalog.
+ */
+@Service
+public class CatalogExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogExportService.class);
+
+    private static final String[] CSV_HEADER = {
+            "id", "name", "description", "price", "category_id", "category", "stock", "image_url", "image_count"
+    };
+
+    private final ProductRepository productRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public CatalogExportService(ProductRepository productRepository,
+                                EntityManager entityManager,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Write every product to the stream. Runs its own read-only transaction because
+     * streaming responses are written outside the request thread.
+     *
+     * @param format Output format
+     * @param out    Destination, not closed
+     */
+    public void export(CatalogFileFormat format, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long rows;
+        try {
+            rows = readOnlyTransaction.execute(status -> {
+                try (Stream<Product> products = productRepository.streamAllForExport()) {
+                    if (format == CatalogFileFormat.CSV) {
+                        writeCsvRow(writer, CSV_HEADER);
+                    }
+                    long count = 0;
+                    for (Product product : (Iterable<Product>) products::iterator) {
+                        writeRow(format, writer, ProductSummary.from(product));
+                        // Keep the persistence context from growing with the catalog
+                        entityManager.detach(product);
+                        count++;
+                    }
+                    return count;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        log.info("Exported {} products as {} in {} ms", rows, format, System.currentTimeMillis() - start);
+    }
+
+    private void writeRow(CatalogFileFormat format, Writer writer, ProductSummary product) throws IOException {
+        if (format == CatalogFileFormat.JSONL) {
+            writer.write(objectMapper.writeValueAsString(product));
+            writer.write('\n');
+            return;
+        }
+        writeCsvRow(writer,
+                String.valueOf(product.getId()),
+                product.getName(),
+                product.getDescription(),
+                product.getPrice() == null ? null : product.getPrice().toPlainString(),
+                product.getCategory() == null ? null : String.valueOf(product.getCategory().getId()),
+                product.getCategory() == null ? null : product.getCategory().getName(),
+                product.getStock() == null ? null : String.valueOf(product.getStock()),
+                product.getImageUrl(),
+                String.valueOf(product.getImageCount()));
+    }
+
+    // RFC 4180: quote fields containing separators, quotes or line breaks
+    private static void writeCsvRow(Writer writer, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String field = fields[i];
+            if (field == null) {
+                continue;
+            }
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0
+                    || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+        writer.write("\r\n");
+    }
+}
@@ -1,8 +1,11 @@
 package com.shotx.shop.service;
 
+import com.shotx.shop.cache.CatalogCache;
+import com.shotx.shop.event.CategoryChangedEvent;
 import com.shotx.shop.model.Category;
 import com.shotx.shop.repository.CategoryRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -12,31 +15,46 @@ import java.util.Optional;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final CatalogCache catalogCache;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public CategoryService(CategoryRepository categoryRepository) {
+    public CategoryService(CategoryRepository categoryRepository,
+                           CatalogCache catalogCache,
+                           ApplicationEventPublisher eventPublisher) {
         this.categoryRepository = categoryRepository;
+        this.catalogCache = catalogCache;
+        this.eventPublisher = eventPublisher;
     }
 
     public Category createCategory(Category category) {
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        publish(saved.getId(), CategoryChangedEvent.Type.CREATED);
+        return saved;
     }
 
     public List<Category> getAllCategories() {
-        return categoryRepository.findAll();
+        return catalogCache.getCategories(categoryRepository::findAll);
     }
 
     public Optional<Category> getCategoryById(Long id) {
-        return categoryRepository.findById(id);
+        return catalogCache.getCategory(id, () -> categoryRepository.findById(id));
     }
 
     public Category updateCategory(Long id, Category categoryDetails) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Category not found"));
         category.setName(categoryDetails.getName());
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        publish(id, CategoryChangedEvent.Type.UPDATED);
+        return saved;
     }
 
     public void deleteCategory(Long id) {
         categoryRepository.deleteById(id);
+        publish(id, CategoryChangedEvent.Type.DELETED);
+    }
+
+    private void publish(Long categoryId, CategoryChangedEvent.Type type) {
+        eventPublisher.publishEvent(new CategoryChangedEvent(categoryId, type));
     }
 }
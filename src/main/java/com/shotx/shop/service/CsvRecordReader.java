@@ -0,0 +1,132 @@
+package com.shotx.shop.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental RFC 4180 reader: one record at a time, quoted fields may span lines.
+ */
+class CsvRecordReader {
+
+    private final Reader in;
+    private int pending = -2;
+    private long line = 1;
+    private long recordLine = 1;
+
+    CsvRecordReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * @return The next non-empty record, or null at the end of the input
+     */
+    List<String> next() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            if (c == '\r' || c == '\n') {
+                consumeLineBreak(c);
+                continue;
+            }
+            recordLine = line;
+            unread(c);
+            return readRecord();
+        }
+    }
+
+    /**
+     * @return Line number the last record returned by {@link #next()} started on
+     */
+    long getLine() {
+        return recordLine;
+    }
+
+    private List<String> readRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            int c = read();
+            if (quoted) {
+                if (c == -1) {
+                    throw new CsvFormatException(recordLine, "Unterminated quoted field starting on line " + recordLine);
+                }
+                if (c == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        unread(following);
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+                continue;
+            }
+            if (c == -1 || c == '\r' || c == '\n') {
+                fields.add(field.toString());
+                if (c != -1) {
+                    consumeLineBreak(c);
+                }
+                return fields;
+            }
+            if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    // \r\n, \n and a lone \r all end a line
+    private void consumeLineBreak(int c) throws IOException {
+        if (c == '\r') {
+            int following = read();
+            if (following != '\n') {
+                unread(following);
+            }
+        }
+        line++;
+    }
+
+    /**
+     * Input that is not valid CSV, as opposed to a failure reading it
+     */
+    static class CsvFormatException extends IOException {
+
+        private final long line;
+
+        CsvFormatException(long line, String message) {
+            super(message);
+            this.line = line;
+        }
+
+        long getLine() {
+            return line;
+        }
+    }
+
+    private int read() throws IOException {
+        if (pending != -2) {
+            int c = pending;
+            pending = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private void unread(int c) {
+        pending = c;
+    }
+}
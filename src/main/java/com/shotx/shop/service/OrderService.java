@@ -2,14 +2,17 @@ package com.shotx.shop.service;
 
 import com.shotx.shop.model.Order;
 import com.shotx.shop.model.OrderItem;
-import com.shotx.shop.model.Product;
 import com.shotx.shop.repository.OrderRepository;
 import com.shotx.shop.repository.ProductRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.LongStream;
 
 @Service
 public class OrderService {
@@ -24,25 +27,54 @@ public class OrderService {
         this.productService = productService;
     }
 
+    /**
+     * Place a pending order at current prices. Every product in the order is read with one
+     * query and kept in arrays sorted by id; stock is checked against the units requested per
+     * product, summed over repeated lines. Order items have pooled ids, so their inserts are
+     * sent as one JDBC batch.
+     *
+     * @param username Customer
+     * @param items    Product and quantity per line
+     * @return The saved order
+     */
     @Transactional
     public Order placeOrder(String username, List<OrderItem> items) {
-        // First check if all products have sufficient stock
+        long[] productIds = items.stream().mapToLong(OrderItem::getProductId).sorted().distinct().toArray();
+        List<ProductRepository.PriceLevel> levels = productIds.length == 0 ? List.of()
+                : productRepository.findPriceLevels(LongStream.of(productIds).boxed().toList());
+
+        // Found products by slot, ordered by id for binary search
+        long[] ids = new long[levels.size()];
+        BigDecimal[] prices = new BigDecimal[levels.size()];
+        int[] stock = new int[levels.size()];
+        for (int slot = 0; slot < levels.size(); slot++) {
+            ProductRepository.PriceLevel level = levels.get(slot);
+            ids[slot] = level.getId();
+            prices[slot] = level.getPrice();
+            stock[slot] = level.getStock();
+        }
+
+        // First check that every product exists and has enough stock for all its lines
+        int[] requested = new int[ids.length];
         for (OrderItem item : items) {
-            if (!productService.checkStock(item.getProductId(), item.getQuantity())) {
-                throw new RuntimeException("Not enough stock for product ID: " + item.getProductId());
+            int slot = Arrays.binarySearch(ids, item.getProductId());
+            if (slot < 0) {
+                throw new RuntimeException("Product not found: " + item.getProductId());
+            }
+            requested[slot] += item.getQuantity();
+        }
+        for (int slot = 0; slot < ids.length; slot++) {
+            if (stock[slot] < requested[slot]) {
+                throw new RuntimeException("Not enough stock for product ID: " + ids[slot]);
             }
         }
 
-        // Calculate total and set order reference for each item.
+        // Calculate total and set the price per unit at the time of order
         BigDecimal total = BigDecimal.ZERO;
         for (OrderItem item : items) {
-            // Retrieve product info to calculate price.
-            Product product = productRepository.findById(item.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Product not found: " + item.getProductId()));
-
-            BigDecimal itemPrice = product.getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
-            item.setPrice(product.getPrice()); // Set the price per unit at the time of order
-            total = total.add(itemPrice);
+            BigDecimal price = prices[Arrays.binarySearch(ids, item.getProductId())];
+            item.setPrice(price);
+            total = total.add(price.multiply(BigDecimal.valueOf(item.getQuantity())));
 
             // We don't decrease stock yet - we'll do that after payment is confirmed
         }
@@ -84,9 +116,7 @@ public class OrderService {
 
         // If the payment was successful, decrease the stock
         if (status == Order.PaymentStatus.PAID) {
-            for (OrderItem item : order.getItems()) {
-                productService.decreaseStock(item.getProductId(), item.getQuantity());
-            }
+            decreaseStock(order);
         }
 
         return orderRepository.save(order);
@@ -101,10 +131,17 @@ public class OrderService {
         order.setPaymentIntentId(paymentIntentId);
 
         // Decrease stock for all items in the order
-        for (OrderItem item : order.getItems()) {
-            productService.decreaseStock(item.getProductId(), item.getQuantity());
-        }
+        decreaseStock(order);
 
         return orderRepository.save(order);
     }
+
+    // Product rows are locked in id order, so two payments sharing products cannot deadlock
+    private void decreaseStock(Order order) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (OrderItem item : order.getItems()) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        quantities.forEach(productService::decreaseStock);
+    }
 }
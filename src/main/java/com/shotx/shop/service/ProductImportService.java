@@ -0,0 +1,302 @@
+package com.shotx.shop.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shotx.shop.event.ProductsImportedEvent;
+import com.shotx.shop.model.CatalogFileFormat;
+import com.shotx.shop.model.Category;
+import com.shotx.shop.model.Product;
+import com.shotx.shop.model.ProductImage;
+import com.shotx.shop.model.ProductImportReport;
+import com.shotx.shop.repository.CategoryRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk product import from CSV or JSON Lines. The input is parsed one row at a time and
+ * valid rows are inserted in batches, each batch in its own transaction. Product and image
+ * ids come from pooled sequences, so Hibernate sends every batch as JDBC batched inserts.
+ * A failing batch is rolled back and reported without stopping the import. Malformed CSV
+ * that cannot be split into further records ends the import with a row error; the batches
+ * before it stay imported and the report is returned as usual.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+
+    private static final BigDecimal MIN_PRICE = new BigDecimal("0.01");
+
+    private final CategoryRepository categoryRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${shop.import.batch-size}")
+    private int defaultBatchSize;
+
+    @Value("${shop.import.max-reported-errors}")
+    private int maxReportedErrors;
+
+    public ProductImportService(CategoryRepository categoryRepository,
+                                EntityManager entityManager,
+                                ObjectMapper objectMapper,
+                                ApplicationEventPublisher eventPublisher,
+                                PlatformTransactionManager transactionManager) {
+        this.categoryRepository = categoryRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * One imported row. JSON Lines may give the category either as categoryId or as a
+     * nested category object, so the export output can be imported back.
+     */
+    public static class ImportRow {
+        public String name;
+        public String description;
+        public BigDecimal price;
+        public Long categoryId;
+        public Category category;
+        public Integer stock;
+        public String imageUrl;
+    }
+
+    private record ParsedRow(long line, ImportRow row) {}
+
+    /**
+     * Import products from the stream
+     *
+     * @param format    Input format
+     * @param in        Input, read to the end but not closed
+     * @param batchSize Rows per transaction, null for the configured default
+     * @return Counters, throughput and row errors
+     */
+    public ProductImportReport importProducts(CatalogFileFormat format, InputStream in, Integer batchSize)
+            throws IOException {
+        int size = batchSize != null ? batchSize : defaultBatchSize;
+        ProductImportReport report = new ProductImportReport(size);
+        Set<Long> categoryIds = categoryRepository.findAll().stream()
+                .map(Category::getId)
+                .collect(Collectors.toSet());
+
+        long start = System.currentTimeMillis();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<ParsedRow> batch = new ArrayList<>(size);
+        RowSource rows = format == CatalogFileFormat.CSV ? new CsvRows(reader) : new JsonLinesRows(reader);
+        ParsedRow parsed;
+        while ((parsed = rows.next(report)) != null) {
+            report.rowRead();
+            String error = validate(parsed.row(), categoryIds);
+            if (error != null) {
+                report.rowFailed(parsed.line(), error, maxReportedErrors);
+                continue;
+            }
+            batch.add(parsed);
+            if (batch.size() == size) {
+                insertBatch(batch, report);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            insertBatch(batch, report);
+        }
+
+        report.finish(System.currentTimeMillis() - start);
+        log.info("Imported {} of {} products in {} batches, {} ms ({} rows/s)", report.getImported(),
+                report.getRowsRead(), report.getBatches(), report.getDurationMs(),
+                Math.round(report.getRowsPerSecond()));
+        return report;
+    }
+
+    private void insertBatch(List<ParsedRow> batch, ProductImportReport report) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Product> products = new ArrayList<>(batch.size());
+                for (ParsedRow parsed : batch) {
+                    Product product = toProduct(parsed.row());
+                    entityManager.persist(product);
+                    products.add(product);
+                }
+                entityManager.flush();
+                List<Long> ids = products.stream().map(Product::getId).toList();
+                // The batch is done with; keep the persistence context from growing
+                entityManager.clear();
+                // Delivered after commit
+                eventPublisher.publishEvent(new ProductsImportedEvent(ids));
+            });
+            report.batchImported(batch.size());
+        } catch (RuntimeException e) {
+            log.warn("Import batch starting on line {} rolled back: {}", batch.get(0).line(), e.getMessage());
+            for (ParsedRow parsed : batch) {
+                report.rowFailed(parsed.line(), "Batch rolled back: " + e.getMessage(), maxReportedErrors);
+            }
+        }
+    }
+
+    private Product toProduct(ImportRow row) {
+        Category category = entityManager.getReference(Category.class, categoryIdOf(row));
+        Product product = new Product(row.name.trim(), row.description, row.price, category,
+                row.stock != null ? row.stock : 0);
+        if (row.imageUrl != null && !row.imageUrl.isBlank()) {
+            product.addImage(new ProductImage(row.imageUrl.trim(), product, true, 0));
+        }
+        product.syncImageSummary();
+        return product;
+    }
+
+    // Same rules as the Product bean validation, checked up front so one bad row cannot fail a batch
+    private static String validate(ImportRow row, Set<Long> categoryIds) {
+        if (row.name == null || row.name.isBlank()) {
+            return "Product name is required";
+        }
+        if (row.price == null) {
+            return "Product price is required";
+        }
+        if (row.price.compareTo(MIN_PRICE) < 0) {
+            return "Price must be at least 0.01";
+        }
+        Long categoryId = categoryIdOf(row);
+        if (categoryId == null) {
+            return "Category is required";
+        }
+        if (!categoryIds.contains(categoryId)) {
+            return "Unknown category: " + categoryId;
+        }
+        if (row.stock != null && row.stock < 0) {
+            return "Stock quantity cannot be negative";
+        }
+        return null;
+    }
+
+    private static Long categoryIdOf(ImportRow row) {
+        if (row.categoryId != null) {
+            return row.categoryId;
+        }
+        return row.category != null ? row.category.getId() : null;
+    }
+
+    // Rows that cannot be parsed are reported here and skipped
+    private interface RowSource {
+        ParsedRow next(ProductImportReport report) throws IOException;
+    }
+
+    private class JsonLinesRows implements RowSource {
+
+        private final BufferedReader reader;
+        private long line;
+
+        JsonLinesRows(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public ParsedRow next(ProductImportReport report) throws IOException {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                try {
+                    return new ParsedRow(line, objectMapper.readValue(text, ImportRow.class));
+                } catch (JsonProcessingException e) {
+                    report.rowRead();
+                    report.rowFailed(line, "Invalid JSON: " + e.getOriginalMessage(), maxReportedErrors);
+                }
+            }
+            return null;
+        }
+    }
+
+    // Columns are matched by header name; the export's extra columns are ignored
+    private class CsvRows implements RowSource {
+
+        private final CsvRecordReader reader;
+        private Map<String, Integer> columns;
+
+        CsvRows(BufferedReader reader) {
+            this.reader = new CsvRecordReader(reader);
+        }
+
+        @Override
+        public ParsedRow next(ProductImportReport report) throws IOException {
+            if (columns == null) {
+                List<String> header = nextRecord(report);
+                if (header == null) {
+                    return null;
+                }
+                columns = new HashMap<>();
+                for (int i = 0; i < header.size(); i++) {
+                    columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+                }
+                if (!columns.containsKey("name")) {
+                    throw new IllegalArgumentException("CSV header must contain a name column");
+                }
+            }
+            List<String> record;
+            while ((record = nextRecord(report)) != null) {
+                try {
+                    ImportRow row = new ImportRow();
+                    row.name = column(record, "name");
+                    row.description = column(record, "description");
+                    String price = column(record, "price");
+                    row.price = price == null ? null : new BigDecimal(price.trim());
+                    String categoryId = column(record, "category_id");
+                    row.categoryId = categoryId == null ? null : Long.valueOf(categoryId.trim());
+                    String stock = column(record, "stock");
+                    row.stock = stock == null ? null : Integer.valueOf(stock.trim());
+                    row.imageUrl = column(record, "image_url");
+                    return new ParsedRow(reader.getLine(), row);
+                } catch (NumberFormatException e) {
+                    report.rowRead();
+                    report.rowFailed(reader.getLine(), "Invalid number: " + e.getMessage(), maxReportedErrors);
+                }
+            }
+            return null;
+        }
+
+        // Nothing after an unterminated quote can be split into records: report it and stop
+        private List<String> nextRecord(ProductImportReport report) throws IOException {
+            try {
+                return reader.next();
+            } catch (CsvRecordReader.CsvFormatException e) {
+                report.rowRead();
+                report.rowFailed(e.getLine(), e.getMessage(), maxReportedErrors);
+                return null;
+            }
+        }
+
+        private String column(List<String> record, String name) {
+            Integer index = columns.get(name);
+            if (index == null || index >= record.size()) {
+                return null;
+            }
+            String value = record.get(index);
+            return value.isEmpty() ? null : value;
+        }
+    }
+}
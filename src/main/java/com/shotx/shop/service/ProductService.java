@@ -1,10 +1,29 @@
 package com.shotx.shop.service;
 
+import com.shotx.shop.cache.CatalogCache;
+import com.shotx.shop.cache.SearchResultCache;
+import com.shotx.shop.event.ProductChangedEvent;
+import com.shotx.shop.event.ProductLevelChangedEvent;
 import com.shotx.shop.model.Product;
+import com.shotx.shop.model.ProductBatch;
+import com.shotx.shop.model.ProductCursor;
+import com.shotx.shop.model.ProductDetail;
+import com.shotx.shop.model.ProductFieldSet;
+import com.shotx.shop.model.ProductFilter;
 import com.shotx.shop.model.ProductImage;
+import com.shotx.shop.model.ProductPage;
+import com.shotx.shop.model.ProductSort;
+import com.shotx.shop.model.ProductSummary;
 import com.shotx.shop.repository.ProductImageRepository;
 import com.shotx.shop.repository.ProductRepository;
+import com.shotx.shop.search.CatalogFilterIndex;
+import com.shotx.shop.search.ProductSearchEngine;
+import com.shotx.shop.search.SearchHit;
+import com.shotx.shop.search.Suggestion;
+import com.shotx.shop.search.SuggestionIndex;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.Tuple;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -14,8 +33,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -23,11 +50,30 @@ public class ProductService {
 
     private final ProductRepository productRepository;
     private final ProductImageRepository productImageRepository;
+    private final ProductSearchEngine searchEngine;
+    private final SuggestionIndex suggestionIndex;
+    private final CatalogFilterIndex filterIndex;
+    private final CatalogCache catalogCache;
+    private final SearchResultCache searchResultCache;
+    private final ApplicationEventPublisher eventPublisher;
     private final String uploadDir = "uploads";
 
-    public ProductService(ProductRepository productRepository, ProductImageRepository productImageRepository) {
+    public ProductService(ProductRepository productRepository,
+                          ProductImageRepository productImageRepository,
+                          ProductSearchEngine searchEngine,
+                          SuggestionIndex suggestionIndex,
+                          CatalogFilterIndex filterIndex,
+                          CatalogCache catalogCache,
+                          SearchResultCache searchResultCache,
+                          ApplicationEventPublisher eventPublisher) {
         this.productRepository = productRepository;
         this.productImageRepository = productImageRepository;
+        this.searchEngine = searchEngine;
+        this.suggestionIndex = suggestionIndex;
+        this.filterIndex = filterIndex;
+        this.catalogCache = catalogCache;
+        this.searchResultCache = searchResultCache;
+        this.eventPublisher = eventPublisher;
 
         // Create uploads directory if it doesn't exist
         try {
@@ -40,54 +86,244 @@ public class ProductService {
         }
     }
 
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    /**
+     * The whole catalog as summaries, loaded with a single query on product and category
+     */
+    public List<ProductSummary> getAllProducts() {
+        return toSummaries(productRepository.findAllForListing());
     }
 
     /**
-     * Search for products by name, description, or category
+     * One keyset page of the catalog
      *
-     * @param query The search term
-     * @return List of products matching the search criteria
+     * @param categoryIds Optional category filter
+     * @param sort        Sort key
+     * @param descending  Sort direction
+     * @param after       Cursor from the previous page, null for the first page
+     * @param limit       Page size
+     * @return The page and the cursor of the next one
      */
-    public List<Product> searchProducts(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return getAllProducts();
+    public ProductPage getProductPage(Collection<Long> categoryIds, ProductSort sort, boolean descending,
+                                      String after, int limit) {
+        if (sort == ProductSort.RELEVANCE) {
+            throw new IllegalArgumentException("Relevance sort requires a search query");
+        }
+        ProductCursor cursor = after == null ? null : ProductCursor.decode(after, sort, descending);
+
+        // One extra row tells us whether there is a next page
+        List<ProductSummary> rows = toSummaries(productRepository.findPage(categoryIds, sort, descending, cursor, limit + 1));
+        if (rows.size() <= limit) {
+            return new ProductPage(rows, null);
+        }
+        List<ProductSummary> items = rows.subList(0, limit);
+        ProductSummary last = items.get(limit - 1);
+        return new ProductPage(items, ProductCursor.after(last, 0, sort, descending).encode());
+    }
+
+    /**
+     * One keyset page of the catalog reduced to the requested properties
+     *
+     * @param categoryIds Optional category filter
+     * @param sort        Sort key
+     * @param descending  Sort direction
+     * @param after       Cursor from the previous page, null for the first page
+     * @param limit       Page size
+     * @param fields      Properties to load and return
+     * @return The page and the cursor of the next one
+     */
+    public ProductPage getProductFieldsPage(Collection<Long> categoryIds, ProductSort sort, boolean descending,
+                                            String after, int limit, ProductFieldSet fields) {
+        if (sort == ProductSort.RELEVANCE) {
+            throw new IllegalArgumentException("Relevance sort requires a search query");
+        }
+        ProductCursor cursor = after == null ? null : ProductCursor.decode(after, sort, descending);
+        List<Tuple> rows = productRepository.findPageFields(categoryIds, sort, descending, cursor, limit + 1, fields);
+        List<Map<String, Object>> items = rows.stream().limit(limit).map(fields::toMap).toList();
+        if (rows.size() <= limit) {
+            return new ProductPage(items, null);
+        }
+        // The cursor comes from the id and sort key, which are selected even when not requested
+        Tuple last = rows.get(limit - 1);
+        Long lastId = last.get("id", Long.class);
+        Comparable<?> key = sort == ProductSort.ID ? lastId : (Comparable<?>) last.get(ProductFieldSet.SORT_KEY);
+        return new ProductPage(items, new ProductCursor(sort, descending, key, lastId).encode());
+    }
+
+    /**
+     * A single product reduced to the requested properties; images are read only when asked for
+     */
+    public Optional<Map<String, Object>> getProductFields(Long id, ProductFieldSet fields) {
+        return productRepository.findFieldsById(id, fields).map(row -> {
+            Map<String, Object> values = fields.toMap(row);
+            if (fields.has("images")) {
+                values.put("images", productImageRepository.findByProductId(id).stream()
+                        .sorted(Comparator.comparing(ProductImage::getDisplayOrder,
+                                Comparator.nullsLast(Comparator.naturalOrder())))
+                        .map(ProductDetail.Image::from)
+                        .toList());
+            }
+            return values;
+        });
+    }
+
+    /**
+     * One keyset page of the catalog restricted by price, stock and category, evaluated
+     * on the in-memory filter index. Only the rows of the page are read from the database.
+     *
+     * @param filter     Category, price and stock filter
+     * @param sort       {@link ProductSort#ID} or {@link ProductSort#PRICE}
+     * @param descending Sort direction
+     * @param after      Cursor from the previous page, null for the first page
+     * @param limit      Page size
+     * @return The page and the cursor of the next one
+     */
+    public ProductPage getFilteredPage(ProductFilter filter, ProductSort sort, boolean descending,
+                                       String after, int limit) {
+        ProductCursor cursor = after == null ? null : ProductCursor.decode(after, sort, descending);
+        List<Long> ids = filterIndex.filter(filter, sort, descending, cursor, limit + 1);
+        List<ProductSummary> items = getSummaries(ids.size() > limit ? ids.subList(0, limit) : ids);
+        if (ids.size() <= limit || items.isEmpty()) {
+            return new ProductPage(items, null);
         }
-        return productRepository.searchProducts(query.trim());
+        ProductSummary last = items.get(items.size() - 1);
+        return new ProductPage(items, ProductCursor.after(last, 0, sort, descending).encode());
     }
 
     /**
-     * Search for products by name, description, or category within specified categories
+     * Summaries for the given ids in the same order, read with one query; unknown ids are skipped
+     *
+     * @param ids Product IDs
+     * @return Summaries in the order of the ids
+     */
+    public List<ProductSummary> getSummaries(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Product> byId = new HashMap<>();
+        productRepository.findByIdIn(ids).forEach(product -> byId.put(product.getId(), product));
+        List<ProductSummary> summaries = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Product product = byId.get(id);
+            if (product != null) {
+                summaries.add(ProductSummary.from(product));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Resolve many products at once, for rendering carts and orders
+     *
+     * @param ids Product IDs, in the order the caller wants them back
+     * @return Products in request order and the ids that were not found
+     */
+    public ProductBatch getProductBatch(Collection<Long> ids) {
+        List<Long> requested = ids.stream().filter(Objects::nonNull).distinct().toList();
+        List<ProductSummary> items = getSummaries(requested);
+        if (items.size() == requested.size()) {
+            return new ProductBatch(items, List.of());
+        }
+        Set<Long> found = new HashSet<>();
+        items.forEach(item -> found.add(item.getId()));
+        List<Long> missing = requested.stream().filter(id -> !found.contains(id)).toList();
+        return new ProductBatch(items, missing);
+    }
+
+    /**
+     * One keyset page of search results. Text queries are paged over the in-memory hits,
+     * an empty query falls back to the database listing.
      *
      * @param query       The search term
-     * @param categoryIds List of category IDs to filter by
-     * @return List of products matching the search criteria and categories
+     * @param categoryIds Optional category filter
+     * @param sort        Sort key, {@link ProductSort#RELEVANCE} orders by search score
+     * @param descending  Sort direction
+     * @param after       Cursor from the previous page, null for the first page
+     * @param limit       Page size
+     * @return The page and the cursor of the next one
      */
-    public List<Product> searchProductsByCategories(String query, List<Long> categoryIds) {
+    public ProductPage searchProductPage(String query, List<Long> categoryIds, ProductSort sort, boolean descending,
+                                         String after, int limit) {
         if (query == null || query.trim().isEmpty()) {
-            // If no search query but category filters are present
-            if (categoryIds != null && !categoryIds.isEmpty()) {
-                return productRepository.findAll().stream()
-                        .filter(p -> p.getCategory() != null && categoryIds.contains(p.getCategory().getId()))
-                        .toList();
-            }
-            return getAllProducts();
+            return getProductPage(categoryIds, sort == ProductSort.RELEVANCE ? ProductSort.ID : sort,
+                    descending, after, limit);
         }
+        ProductCursor cursor = after == null ? null : ProductCursor.decode(after, sort, descending);
 
-        if (categoryIds == null || categoryIds.isEmpty()) {
-            return searchProducts(query);
+        List<RankedProduct> ranked = new ArrayList<>();
+        for (SearchHit hit : searchHits(query, categoryIds)) {
+            searchEngine.getDocument(hit.getProductId()).ifPresent(product ->
+                    ranked.add(new RankedProduct(product, sort.keyOf(product, hit.getScore()))));
         }
+        Comparator<RankedProduct> order = descending ? RankedProduct.ORDER.reversed() : RankedProduct.ORDER;
+        RankedProduct from = cursor == null ? null
+                : new RankedProduct(null, cursor.getKey(), cursor.getId());
+
+        List<RankedProduct> page = ranked.stream()
+                .filter(r -> from == null || order.compare(r, from) > 0)
+                .sorted(order)
+                .limit(limit + 1L)
+                .toList();
+        List<ProductSummary> items = page.stream().limit(limit).map(RankedProduct::product).toList();
+        if (page.size() <= limit) {
+            return new ProductPage(items, null);
+        }
+        RankedProduct last = page.get(limit - 1);
+        return new ProductPage(items, new ProductCursor(sort, descending, last.key(), last.id()).encode());
+    }
+
+    // A search result with its sort key, ordered by (key, id) like the database pages
+    private record RankedProduct(ProductSummary product, Comparable<?> key, Long id) {
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        static final Comparator<RankedProduct> ORDER = Comparator
+                .comparing((RankedProduct r) -> (Comparable) r.key())
+                .thenComparing(RankedProduct::id);
+
+        RankedProduct(ProductSummary product, Comparable<?> key) {
+            this(product, key, product.getId());
+        }
+    }
 
-        return productRepository.searchProductsByCategories(query.trim(), categoryIds);
+    private List<SearchHit> searchHits(String query, Collection<Long> categoryIds) {
+        return searchResultCache.get(query, categoryIds, () -> searchEngine.search(query, categoryIds));
+    }
+
+    private static List<ProductSummary> toSummaries(List<Product> products) {
+        return products.stream().map(ProductSummary::from).toList();
+    }
+
+    /**
+     * Product counts per category for the storefront sidebar, served from the search index
+     *
+     * @param query The search term, empty for catalog-wide counts
+     * @return Map of category ID to number of products
+     */
+    public Map<Long, Integer> getCategoryFacets(String query) {
+        return searchEngine.facetCounts(query);
+    }
+
+    /**
+     * Typeahead completions over product and category names
+     *
+     * @param prefix What the user has typed so far
+     * @param limit  Maximum number of suggestions
+     * @return Suggestions, best first
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return suggestionIndex.suggest(prefix, limit);
     }
 
-    public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+    /**
+     * Product by id, served from the shared catalog cache when possible
+     */
+    public Optional<ProductDetail> getProductById(Long id) {
+        return catalogCache.getProduct(id, () -> productRepository.findWithImagesById(id).map(ProductDetail::from));
     }
 
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        publish(saved.getId(), ProductChangedEvent.Type.CREATED);
+        return saved;
     }
 
     public Product updateProduct(Long id, Product productDetails) {
@@ -104,16 +340,20 @@ public class ProductService {
             product.setStock(productDetails.getStock());
         }
 
-        // Legacy imageUrl support
-        if (productDetails.getImageUrl() != null) {
+        // Legacy imageUrl support, only while the product has no images of its own
+        if (productDetails.getImageUrl() != null && product.getImageCount() == 0) {
             product.setImageUrl(productDetails.getImageUrl());
         }
 
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        publish(id, ProductChangedEvent.Type.UPDATED);
+        publishLevel(saved);
+        return saved;
     }
 
     public void deleteProduct(Long id) {
         productRepository.deleteById(id);
+        publish(id, ProductChangedEvent.Type.DELETED);
     }
 
     /**
@@ -130,6 +370,22 @@ public class ProductService {
         return product.getStock() >= requestedQuantity;
     }
 
+    /**
+     * Current stock of several products, read with one query
+     *
+     * @param productIds Product IDs
+     * @return Stock per product ID; unknown products are absent
+     */
+    public Map<Long, Integer> getStockLevels(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Integer> levels = new HashMap<>();
+        productRepository.findStockLevels(productIds)
+                .forEach(level -> levels.put(level.getId(), level.getStock()));
+        return levels;
+    }
+
     /**
      * Decreases the stock of a product by the given quantity
      *
@@ -140,14 +396,18 @@ public class ProductService {
      */
     @Transactional
     public Product decreaseStock(Long productId, int quantity) {
-        Product product = productRepository.findById(productId)
+        // Locking read: a cached copy may lag behind another transaction's decrement
+        Product product = productRepository.findByIdForUpdate(productId)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
 
         if (!product.decreaseStock(quantity)) {
             throw new RuntimeException("Insufficient stock for product: " + product.getName());
         }
 
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        publish(productId, ProductChangedEvent.Type.STOCK);
+        publishLevel(saved);
+        return saved;
     }
 
     /**
@@ -190,14 +450,12 @@ public class ProductService {
         img.setDisplayOrder(product.getImages().size());
         img.setIsPrimary(isPrimary);
         product.addImage(img);
-
-        // — Legacy single‑image support —
-        if (isPrimary) {
-            product.setImageUrl(imageUrl);
-        }
+        product.syncImageSummary();
 
         // **Only save the product** (cascade will persist the new image)
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        publish(productId, ProductChangedEvent.Type.UPDATED);
+        return saved;
     }
 
     /**
@@ -239,11 +497,7 @@ public class ProductService {
 
         // If the deleted image was primary and there are other images, set the first one as primary
         if (wasPrimary && !product.getImages().isEmpty()) {
-            ProductImage newPrimary = product.getImages().get(0);
-            newPrimary.setIsPrimary(true);
-
-            // Update the legacy imageUrl as well
-            product.setImageUrl(newPrimary.getImageUrl());
+            product.getImages().get(0).setIsPrimary(true);
         } else if (product.getImages().isEmpty()) {
             // No more images, clear the legacy imageUrl
             product.setImageUrl(null);
@@ -253,8 +507,11 @@ public class ProductService {
         for (int i = 0; i < product.getImages().size(); i++) {
             product.getImages().get(i).setDisplayOrder(i);
         }
+        product.syncImageSummary();
 
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        publish(productId, ProductChangedEvent.Type.UPDATED);
+        return saved;
     }
 
     /**
@@ -266,7 +523,6 @@ public class ProductService {
      */
     @Transactional
     public Product setPrimaryProductImage(Long productId, Long imageId) {
-        // 1) sanity‑check product + image
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new EntityNotFoundException("Product not found"));
         ProductImage toSet = productImageRepository.findById(imageId)
@@ -275,17 +531,13 @@ public class ProductService {
             throw new IllegalArgumentException("Image does not belong to this product");
         }
 
-        // 2) bulk‐clear old primary flags
-        productImageRepository.clearPrimaryFlags(productId);
-
-        // 3) set the new primary
-        productImageRepository.setPrimaryFlag(imageId);
-
-        // 4) update legacy imageUrl on the product
-        product.setImageUrl(toSet.getImageUrl());
+        // Flip the flags on the managed images; dirty checking only updates the rows that changed
+        product.getImages().forEach(img -> img.setIsPrimary(img.getId().equals(imageId)));
+        product.syncImageSummary();
 
-        // 5) save & flush the product so you also see the UPDATE on product.image_url
-        return productRepository.saveAndFlush(product);
+        Product saved = productRepository.save(product);
+        publish(productId, ProductChangedEvent.Type.UPDATED);
+        return saved;
     }
 
     /**
@@ -317,7 +569,20 @@ public class ProductService {
 
             image.setDisplayOrder(i);
         }
+        product.syncImageSummary();
+
+        Product saved = productRepository.save(product);
+        publish(productId, ProductChangedEvent.Type.UPDATED);
+        return saved;
+    }
+
+    // Listeners run once the surrounding transaction (if any) has committed
+    private void publish(Long productId, ProductChangedEvent.Type type) {
+        eventPublisher.publishEvent(new ProductChangedEvent(productId, type));
+    }
 
-        return productRepository.save(product);
+    // Stock and price for the live product stream, also delivered after commit
+    private void publishLevel(Product product) {
+        eventPublisher.publishEvent(new ProductLevelChangedEvent(product.getId(), product.getStock(), product.getPrice()));
     }
 }
\ No newline at end of file
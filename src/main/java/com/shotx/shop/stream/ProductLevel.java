@@ -0,0 +1,8 @@
+package com.shotx.shop.stream;
+
+import java.math.BigDecimal;
+
+/**
+ * Stock and price of a product as pushed to live product pages
+ */
+public record ProductLevel(Long id, Integer stock, BigDecimal price) {}
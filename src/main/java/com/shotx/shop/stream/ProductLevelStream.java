@@ -0,0 +1,272 @@
+package com.shotx.shop.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shotx.shop.event.ProductLevelChangedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Live stock and price updates for product pages, pushed as server-sent events.
+ * <p>
+ * Committed changes are published on a Redis channel, and every node (the writer included)
+ * takes them from there, so a subscriber on any node sees every write. Changes are coalesced
+ * per product: only the latest level of each product is kept, and the pending levels are
+ * flushed to the subscribers on a short fixed delay, one event per subscriber holding all of
+ * its products that changed. Connections are held by the servlet container's async support.
+ * Writes go through a queue per subscriber drained on a small dedicated pool, so a slow client
+ * holds a sender thread rather than the shared scheduler, and there is no thread per connection;
+ * a subscriber that falls {@value #MAX_QUEUED_EVENTS} events behind is dropped. The flush itself
+ * runs on a thread of its own, so long scheduled jobs elsewhere cannot hold up live updates.
+ */
+@Component
+public class ProductLevelStream {
+
+    public static final String LEVEL_CHANNEL = "product:levels";
+
+    private static final Logger log = LoggerFactory.getLogger(ProductLevelStream.class);
+
+    private static final int MAX_QUEUED_EVENTS = 100;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService sender;
+    private final ScheduledExecutorService flusher;
+
+    @Value("${shop.product-stream.timeout-ms}")
+    private long timeoutMs;
+
+    // Latest level per product since the last flush
+    private final Map<Long, ProductLevel> pending = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    // Events are sent in queue order by at most one sender thread at a time, and only once
+    // the current levels went in at the head
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Set<Long> productIds;
+        private final Deque<SseEmitter.SseEventBuilder> queue = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean started;
+
+        Subscriber(SseEmitter emitter, Set<Long> productIds) {
+            this.emitter = emitter;
+            this.productIds = productIds;
+        }
+    }
+
+    public ProductLevelStream(StringRedisTemplate redisTemplate,
+                              RedisMessageListenerContainer listenerContainer,
+                              ObjectMapper objectMapper,
+                              @Value("${shop.product-stream.send-threads}") int sendThreads,
+                              @Value("${shop.product-stream.coalesce-ms}") long coalesceMs) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.sender = Executors.newFixedThreadPool(sendThreads, new CustomizableThreadFactory("product-stream-"));
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("product-stream-flush-"));
+        flusher.scheduleWithFixedDelay(this::flushSafely, coalesceMs, coalesceMs, TimeUnit.MILLISECONDS);
+        listenerContainer.addMessageListener(
+                (message, pattern) -> receive(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(LEVEL_CHANNEL));
+    }
+
+    /**
+     * Open a stream for some products. The current levels are sent first, then a "levels"
+     * event whenever any of the products changes.
+     *
+     * @param productIds Products to follow
+     * @param current    Reads their current levels; called once the subscription is registered,
+     *                   so a change committed after the read is streamed as well
+     * @return The emitter to return from the controller
+     */
+    public SseEmitter subscribe(Set<Long> productIds, Supplier<Collection<ProductLevel>> current) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, productIds);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        for (Long productId : productIds) {
+            // Under the map's lock, so it cannot race with unsubscribe removing an emptied set
+            subscribers.compute(productId, (id, following) -> {
+                Set<Subscriber> set = following != null ? following : ConcurrentHashMap.<Subscriber>newKeySet();
+                set.add(subscriber);
+                return set;
+            });
+        }
+        // Ahead of any level flushed since registering, which can only be as new or newer
+        subscriber.queue.addFirst(levelsEvent(List.copyOf(current.get())));
+        subscriber.queued.incrementAndGet();
+        subscriber.started = true;
+        drain(subscriber);
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    // Runs for the writing node only; every node, this one included, picks it up from Redis
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLevelChanged(ProductLevelChangedEvent event) {
+        ProductLevel level = new ProductLevel(event.getProductId(), event.getStock(), event.getPrice());
+        try {
+            redisTemplate.convertAndSend(LEVEL_CHANNEL, objectMapper.writeValueAsString(level));
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Could not publish the level of product {}, pushing locally only: {}",
+                    event.getProductId(), e.getMessage());
+            offer(level);
+        }
+    }
+
+    // A failed run must not cancel the repeating task
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Product level flush failed: {}", e.toString());
+        }
+    }
+
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // Regroup by subscriber, so each one gets a single event per flush. A level offered
+        // while this runs either goes out now or stays pending for the next flush.
+        Map<Subscriber, List<ProductLevel>> outgoing = new HashMap<>();
+        for (Long productId : pending.keySet()) {
+            ProductLevel level = pending.remove(productId);
+            if (level == null) {
+                continue;
+            }
+            Set<Subscriber> following = subscribers.get(level.id());
+            if (following == null) {
+                continue;
+            }
+            for (Subscriber subscriber : following) {
+                outgoing.computeIfAbsent(subscriber, s -> new ArrayList<>()).add(level);
+            }
+        }
+        outgoing.forEach(this::send);
+    }
+
+    // Keeps idle connections from being closed by proxies
+    @Scheduled(fixedDelayString = "${shop.product-stream.heartbeat-ms}")
+    public void heartbeat() {
+        Set<Subscriber> all = ConcurrentHashMap.newKeySet();
+        subscribers.values().forEach(all::addAll);
+        for (Subscriber subscriber : all) {
+            enqueue(subscriber, SseEmitter.event().comment("ping"));
+        }
+    }
+
+    private void receive(String message) {
+        try {
+            offer(objectMapper.readValue(message, ProductLevel.class));
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed product level message: {}", e.getOriginalMessage());
+        }
+    }
+
+    private void offer(ProductLevel level) {
+        if (subscribers.containsKey(level.id())) {
+            pending.put(level.id(), level);
+        }
+    }
+
+    private void send(Subscriber subscriber, List<ProductLevel> levels) {
+        enqueue(subscriber, levelsEvent(levels));
+    }
+
+    private static SseEmitter.SseEventBuilder levelsEvent(List<ProductLevel> levels) {
+        return SseEmitter.event().name("levels").data(levels);
+    }
+
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (subscriber.queued.incrementAndGet() > MAX_QUEUED_EVENTS) {
+            drop(subscriber, new IOException("Subscriber fell " + MAX_QUEUED_EVENTS + " events behind"));
+            return;
+        }
+        subscriber.queue.addLast(event);
+        drain(subscriber);
+    }
+
+    private void drain(Subscriber subscriber) {
+        if (!subscriber.started || !subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sender.execute(() -> sendQueued(subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.draining.set(false);
+        }
+    }
+
+    private void sendQueued(Subscriber subscriber) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscriber.queue.pollFirst()) != null) {
+                subscriber.queued.decrementAndGet();
+                subscriber.emitter.send(event);
+            }
+        } catch (IOException | IllegalStateException e) {
+            drop(subscriber, e);
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // An event queued after the last poll but before the flag was cleared
+        if (!subscriber.queue.isEmpty()) {
+            drain(subscriber);
+        }
+    }
+
+    private void drop(Subscriber subscriber, Exception cause) {
+        unsubscribe(subscriber);
+        subscriber.queue.clear();
+        subscriber.emitter.completeWithError(cause);
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        for (Long productId : subscriber.productIds) {
+            subscribers.computeIfPresent(productId, (id, following) -> {
+                following.remove(subscriber);
+                return following.isEmpty() ? null : following;
+            });
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.shotx.shop.sync;
+
+import com.shotx.shop.model.CatalogVersioned;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreRemove;
+import jakarta.persistence.PreUpdate;
+
+/**
+ * Stamps catalog rows with the writing transaction's catalog version and leaves a tombstone
+ * for deleted ones. Created by Hibernate through the Spring bean container, so every write
+ * path (services, imports, cascades to images) is covered. Bulk JPQL updates and deletes
+ * bypass entity callbacks and must not be used on catalog tables.
+ * <p>
+ * Updates that leave the feed's view of a row unchanged, such as stock decrements at checkout,
+ * are not stamped, so they never take the catalog sequence lock.
+ */
+public class CatalogChangeListener {
+
+    private final CatalogChangeLog changeLog;
+
+    public CatalogChangeListener(CatalogChangeLog changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    @PrePersist
+    public void stamp(Object entity) {
+        ((CatalogVersioned) entity).setUpdatedVersion(changeLog.versionForWrite());
+    }
+
+    @PreUpdate
+    public void stampIfChanged(Object entity) {
+        if (((CatalogVersioned) entity).hasFeedChanges()) {
+            stamp(entity);
+        }
+    }
+
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    public void markFeedState(Object entity) {
+        ((CatalogVersioned) entity).markFeedState();
+    }
+
+    @PreRemove
+    public void tombstone(Object entity) {
+        CatalogVersioned row = (CatalogVersioned) entity;
+        if (row.getId() != null) {
+            changeLog.recordDeletion(row.getCatalogEntityType(), row.getId());
+        }
+    }
+}
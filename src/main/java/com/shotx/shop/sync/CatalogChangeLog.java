@@ -0,0 +1,110 @@
+package com.shotx.shop.sync;
+
+import com.shotx.shop.model.CatalogChanges;
+import com.shotx.shop.model.CatalogEntityType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Catalog versions and deletion tombstones for the delta feed.
+ * <p>
+ * A writing transaction takes the next version from the single {@code catalog_sequence} row
+ * the first time it flushes a catalog row, and stamps every row it writes with it. The update
+ * keeps that row locked until commit, so the next writer only gets its version once the
+ * previous one is visible: a reader that has seen version {@code n} will never later find a
+ * row committed with a version at or below {@code n}. The lock is taken at flush time, which
+ * for most writes is just before commit.
+ * <p>
+ * Only changes to what the feed serves take a version: catalog edits and import batches, which
+ * are rare and run one at a time. Stock-only updates skip it (see {@link CatalogChangeListener}),
+ * so checkout and payment never wait on the counter. The feed therefore serves no stock; live
+ * levels are streamed by {@code /products/stream}.
+ * <p>
+ * Statements run through JDBC on the transaction's connection, because they are issued from
+ * inside a Hibernate flush.
+ */
+@Component
+public class CatalogChangeLog {
+
+    // Transaction resource holding the version taken by the current transaction
+    private static final Object VERSION_KEY = CatalogChangeLog.class.getName() + ".VERSION";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CatalogChangeLog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return The catalog version of the current transaction's writes, taken on first use
+     */
+    public long versionForWrite() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return nextVersion();
+        }
+        Long version = (Long) TransactionSynchronizationManager.getResource(VERSION_KEY);
+        if (version == null) {
+            version = nextVersion();
+            TransactionSynchronizationManager.bindResource(VERSION_KEY, version);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(VERSION_KEY);
+                }
+            });
+        }
+        return version;
+    }
+
+    /**
+     * @return The latest version handed out, read without locking. Every change up to it is
+     *         visible to the reading transaction, since a version is only handed out once the
+     *         previous one committed.
+     */
+    public long currentVersion() {
+        Long version = jdbcTemplate.queryForObject("SELECT value FROM catalog_sequence WHERE id = 1", Long.class);
+        if (version == null) {
+            throw new IllegalStateException("catalog_sequence is not initialized");
+        }
+        return version;
+    }
+
+    public void recordDeletion(CatalogEntityType type, long id) {
+        jdbcTemplate.update(
+                "INSERT INTO catalog_tombstone (entity_type, entity_id, version, deleted_at) VALUES (?, ?, ?, ?)",
+                type.name(), id, versionForWrite(), new Timestamp(System.currentTimeMillis()));
+    }
+
+    /**
+     * Deletions after a position, in (version, sequence) order
+     *
+     * @param afterVersion  Version of the position
+     * @param afterSequence Tombstone sequence of the position within that version
+     * @param limit         Maximum number of tombstones
+     */
+    public List<CatalogChanges.Tombstone> findDeletions(long afterVersion, long afterSequence, int limit) {
+        return jdbcTemplate.query(
+                "SELECT id, entity_type, entity_id, version FROM catalog_tombstone"
+                        + " WHERE version > ? OR (version = ? AND id > ?)"
+                        + " ORDER BY version, id LIMIT ?",
+                (rs, row) -> new CatalogChanges.Tombstone(rs.getLong("id"),
+                        CatalogEntityType.valueOf(rs.getString("entity_type")),
+                        rs.getLong("entity_id"), rs.getLong("version")),
+                afterVersion, afterVersion, afterSequence, limit);
+    }
+
+    // Row lock on the counter until the transaction ends
+    private long nextVersion() {
+        jdbcTemplate.update("UPDATE catalog_sequence SET value = value + 1 WHERE id = 1");
+        Long version = jdbcTemplate.queryForObject("SELECT value FROM catalog_sequence WHERE id = 1", Long.class);
+        if (version == null) {
+            throw new IllegalStateException("catalog_sequence is not initialized");
+        }
+        return version;
+    }
+}
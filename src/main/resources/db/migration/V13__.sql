@@ -0,0 +1,3 @@
+CREATE INDEX idx_product_price_id ON product (price, id);
+
+CREATE INDEX idx_product_name_id ON product (name, id);
@@ -0,0 +1 @@
+CREATE INDEX idx_product_category_id_id ON product (category_id, id);
@@ -0,0 +1,9 @@
+ALTER TABLE product
+    ADD image_count INT NOT NULL DEFAULT 0;
+
+UPDATE product p
+SET p.image_count = (SELECT COUNT(*) FROM product_image pi WHERE pi.product_id = p.id);
+
+UPDATE product p
+    JOIN product_image pi ON pi.product_id = p.id AND pi.is_primary = TRUE
+SET p.image_url = pi.image_url;
@@ -0,0 +1,15 @@
+CREATE TABLE product_seq
+(
+    next_val BIGINT NULL
+);
+
+INSERT INTO product_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 51 FROM product;
+
+CREATE TABLE product_image_seq
+(
+    next_val BIGINT NULL
+);
+
+INSERT INTO product_image_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 51 FROM product_image;
@@ -0,0 +1,38 @@
+-- Single-row counter behind the catalog delta feed. Writers increment it under a row lock
+-- that is held until commit, so versions become visible in the order they were handed out.
+CREATE TABLE catalog_sequence
+(
+    id    INT    NOT NULL,
+    value BIGINT NOT NULL,
+    CONSTRAINT pk_catalog_sequence PRIMARY KEY (id)
+);
+
+-- Existing rows start at version 1, so a sync from 0 returns the whole catalog
+INSERT INTO catalog_sequence (id, value) VALUES (1, 1);
+
+ALTER TABLE category
+    ADD updated_version BIGINT NOT NULL DEFAULT 1;
+
+ALTER TABLE product
+    ADD updated_version BIGINT NOT NULL DEFAULT 1;
+
+ALTER TABLE product_image
+    ADD updated_version BIGINT NOT NULL DEFAULT 1;
+
+CREATE INDEX idx_category_updated_version ON category (updated_version, id);
+
+CREATE INDEX idx_product_updated_version ON product (updated_version, id);
+
+CREATE INDEX idx_product_image_updated_version ON product_image (updated_version, id);
+
+CREATE TABLE catalog_tombstone
+(
+    id          BIGINT AUTO_INCREMENT NOT NULL,
+    entity_type VARCHAR(16) NOT NULL,
+    entity_id   BIGINT      NOT NULL,
+    version     BIGINT      NOT NULL,
+    deleted_at  datetime    NOT NULL,
+    CONSTRAINT pk_catalog_tombstone PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_catalog_tombstone_version ON catalog_tombstone (version, id);
@@ -0,0 +1,30 @@
+-- Fold duplicate carts of a user into the oldest one, then merge duplicate lines of a cart,
+-- so the unique indexes below can be created on existing data
+UPDATE cart_item ci
+    JOIN cart c ON ci.cart_id = c.id
+    JOIN (SELECT username, MIN(id) AS keep_id FROM cart GROUP BY username) k ON k.username = c.username
+SET ci.cart_id = k.keep_id
+WHERE c.id <> k.keep_id;
+
+DELETE c
+FROM cart c
+    JOIN (SELECT username, MIN(id) AS keep_id FROM cart GROUP BY username) k ON k.username = c.username
+WHERE c.id <> k.keep_id;
+
+UPDATE cart_item ci
+    JOIN (SELECT MIN(id) AS keep_id, SUM(quantity) AS total
+          FROM cart_item
+          GROUP BY cart_id, product_id
+          HAVING COUNT(*) > 1) d ON ci.id = d.keep_id
+SET ci.quantity = d.total;
+
+DELETE ci
+FROM cart_item ci
+    JOIN (SELECT cart_id, product_id, MIN(id) AS keep_id
+          FROM cart_item
+          GROUP BY cart_id, product_id) d ON ci.cart_id = d.cart_id AND ci.product_id = d.product_id
+WHERE ci.id <> d.keep_id;
+
+CREATE UNIQUE INDEX uk_cart_username ON cart (username);
+
+CREATE UNIQUE INDEX uk_cart_item_cart_product ON cart_item (cart_id, product_id);
@@ -0,0 +1,5 @@
+ALTER TABLE cart
+    ADD last_modified datetime NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+-- Abandoned cart sweeper walks idle carts in (last_modified, id) order
+CREATE INDEX idx_cart_last_modified ON cart (last_modified, id);
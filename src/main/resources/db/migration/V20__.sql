@@ -0,0 +1,8 @@
+-- Order items take pooled ids so an order's lines are inserted as one JDBC batch
+CREATE TABLE order_item_seq
+(
+    next_val BIGINT NULL
+);
+
+INSERT INTO order_item_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 51 FROM order_item;
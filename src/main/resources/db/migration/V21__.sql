@@ -0,0 +1,3 @@
+-- Redis cart version last written to the row; a flush of an older version is skipped
+ALTER TABLE cart
+    ADD flushed_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,107 @@
+package com.shotx.shop;
+
+import com.shotx.shop.model.CartItem;
+import com.shotx.shop.model.Product;
+import com.shotx.shop.repository.CartRepository;
+import com.shotx.shop.service.CartService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Many concurrent adds to one user's cart, starting from no cart at all, must end in exactly
+ * one cart with one line per product and every unit accounted for
+ */
+@SpringBootTest
+class CartConcurrencyTests {
+
+    private static final Logger log = LoggerFactory.getLogger(CartConcurrencyTests.class);
+
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 25;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogFixture catalog;
+
+    private final String username = "cart-concurrency-" + System.nanoTime();
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        catalog.createCategory("cart-concurrency");
+        products = catalog.createProducts("Cart product", 2, THREADS * ADDS_PER_THREAD);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM cart_item WHERE cart_id IN (SELECT id FROM cart WHERE username = ?)", username);
+        jdbcTemplate.update("DELETE FROM cart WHERE username = ?", username);
+        catalog.cleanUp();
+    }
+
+    @Test
+    void concurrentAddsNeitherDuplicateNorLoseUpdates() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                    Product product = products.get((thread + i) % products.size());
+                    cartService.addOrUpdateCartItem(username, product.getId(), 1);
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> result : results) {
+            // Rethrows any failure from the worker
+            result.get(2, TimeUnit.MINUTES);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        executor.shutdown();
+
+        int adds = THREADS * ADDS_PER_THREAD;
+        log.info("{} concurrent cart adds for one user in {} ms ({} adds/s)",
+                adds, elapsedMs, Math.round(adds * 1000.0 / Math.max(1, elapsedMs)));
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM cart WHERE username = ?", Integer.class, username));
+        assertEquals(products.size(), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM cart_item ci JOIN cart c ON ci.cart_id = c.id WHERE c.username = ?",
+                Integer.class, username));
+        assertEquals(adds, jdbcTemplate.queryForObject(
+                "SELECT SUM(ci.quantity) FROM cart_item ci JOIN cart c ON ci.cart_id = c.id WHERE c.username = ?",
+                Integer.class, username));
+        assertEquals(adds, cartRepository.findWithItemsByUsername(username).getItems().stream()
+                .mapToInt(CartItem::getQuantity).sum());
+    }
+}
@@ -0,0 +1,124 @@
+package com.shotx.shop;
+
+import com.shotx.shop.model.CatalogChanges;
+import com.shotx.shop.model.Category;
+import com.shotx.shop.model.Product;
+import com.shotx.shop.model.ProductImage;
+import com.shotx.shop.repository.CategoryRepository;
+import com.shotx.shop.repository.ProductRepository;
+import com.shotx.shop.service.CatalogChangeService;
+import com.shotx.shop.sync.CatalogChangeLog;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The catalog change feed paged through categories, products, images and tombstones written
+ * under a single catalog version, so every page boundary falls inside that version
+ */
+@SpringBootTest
+@Transactional
+class CatalogChangeFeedTests {
+
+    private static final int LIMIT = 7;
+
+    @Autowired
+    private CatalogChangeService catalogChangeService;
+
+    @Autowired
+    private CatalogChangeLog changeLog;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private CatalogFixture catalog;
+
+    @Test
+    void pagesWithinOneVersionNeitherSkipNorRepeatRows() {
+        long before = changeLog.currentVersion();
+        // Every write below belongs to the test's transaction, so it takes a single version
+        Set<String> expected = new HashSet<>();
+
+        Category deletedCategory = catalog.createCategory("feed-deleted");
+        for (int i = 0; i < 3; i++) {
+            expected.add("category " + catalog.createCategory("feed").getId());
+        }
+        List<Product> products = catalog.createProducts("Feed product", 12, 5);
+        for (int i = 0; i < 4; i++) {
+            Product product = products.get(i);
+            product.addImage(new ProductImage("/images/feed-" + i + "-a.jpg", product, true, 0));
+            product.addImage(new ProductImage("/images/feed-" + i + "-b.jpg", product, false, 1));
+            product.syncImageSummary();
+        }
+        productRepository.saveAll(products);
+        entityManager.flush();
+        for (Product product : products.subList(0, 4)) {
+            product.getImages().forEach(image -> expected.add("image " + image.getId()));
+        }
+
+        for (Product product : products.subList(10, 12)) {
+            productRepository.delete(product);
+            expected.add("deleted PRODUCT " + product.getId());
+        }
+        for (Product product : products.subList(0, 10)) {
+            expected.add("product " + product.getId());
+        }
+        categoryRepository.delete(deletedCategory);
+        expected.add("deleted CATEGORY " + deletedCategory.getId());
+        entityManager.flush();
+        entityManager.clear();
+
+        long version = changeLog.currentVersion();
+        assertEquals(before + 1, version);
+        // 3 categories, 10 products, 8 images and 3 tombstones
+        assertEquals(24, expected.size());
+
+        List<String> read = new ArrayList<>();
+        String since = String.valueOf(before);
+        int pages = 0;
+        CatalogChanges page;
+        do {
+            page = catalogChangeService.getChanges(since, LIMIT);
+            pages++;
+            page.getCategories().forEach(category -> read.add("category " + category.getId()));
+            page.getProducts().forEach(product -> read.add("product " + product.getId()));
+            page.getImages().forEach(image -> read.add("image " + image.id()));
+            page.getDeleted().forEach(tombstone -> {
+                assertEquals(version, tombstone.version());
+                read.add("deleted " + tombstone.type() + " " + tombstone.id());
+            });
+            assertTrue(page.getProducts().stream().allMatch(product -> product.getStock() == null));
+            since = page.getNext();
+        } while (page.isHasMore());
+
+        assertEquals(4, pages);
+        assertEquals(expected.size(), read.size(), "rows read more than once: " + read);
+        assertEquals(expected, new HashSet<>(read));
+
+        // Caught up: the token is the bare version, and polling it returns nothing
+        assertEquals(String.valueOf(version), since);
+        CatalogChanges poll = catalogChangeService.getChanges(since, LIMIT);
+        assertTrue(poll.getCategories().isEmpty() && poll.getProducts().isEmpty()
+                && poll.getImages().isEmpty() && poll.getDeleted().isEmpty());
+        assertFalse(poll.isHasMore());
+        assertEquals(since, poll.getNext());
+    }
+}
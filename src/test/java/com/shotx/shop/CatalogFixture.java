@@ -0,0 +1,88 @@
+package com.shotx.shop;
+
+import com.shotx.shop.model.Category;
+import com.shotx.shop.model.Product;
+import com.shotx.shop.repository.CategoryRepository;
+import com.shotx.shop.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Catalog rows for the integration tests: a category of the test's own, products in it, the
+ * Hibernate statistics, and removal of the category with every product in it for tests that
+ * commit. A new instance is injected into every test.
+ */
+@Component
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+class CatalogFixture {
+
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final EntityManagerFactory entityManagerFactory;
+
+    private Category category;
+
+    CatalogFixture(CategoryRepository categoryRepository,
+                   ProductRepository productRepository,
+                   EntityManagerFactory entityManagerFactory) {
+        this.categoryRepository = categoryRepository;
+        this.productRepository = productRepository;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Create the test's category, named after the prefix and made unique
+     */
+    Category createCategory(String prefix) {
+        category = categoryRepository.save(new Category(prefix + "-" + System.nanoTime()));
+        return category;
+    }
+
+    Category category() {
+        return category;
+    }
+
+    /**
+     * Save products named "{name} 0" to "{name} {count - 1}" in the test's category, priced
+     * 10 upwards
+     *
+     * @return The saved products, in name order
+     */
+    List<Product> createProducts(String name, int count, int stock) {
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(new Product(name + " " + i, null, BigDecimal.valueOf(10 + i), category, stock));
+        }
+        return productRepository.saveAll(products);
+    }
+
+    /**
+     * @return The Hibernate statistics, switched on
+     */
+    Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        return statistics;
+    }
+
+    /**
+     * Delete the test's category and every product in it, however they were created. Rows
+     * referring to the products (orders, carts) are the test's to delete first.
+     */
+    void cleanUp() {
+        if (category == null) {
+            return;
+        }
+        productRepository.deleteAll(productRepository.findByCategoryId(category.getId()));
+        categoryRepository.delete(category);
+        category = null;
+    }
+}
@@ -0,0 +1,94 @@
+package com.shotx.shop;
+
+import com.shotx.shop.model.Product;
+import com.shotx.shop.search.CatalogFilterIndex;
+import com.shotx.shop.search.CatalogIndexer;
+import com.shotx.shop.search.ProductSearchEngine;
+import com.shotx.shop.service.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Catalog warm-up from the local snapshot plus the change feed against a full database read,
+ * and the snapshot path picking up changes committed after the snapshot was written
+ */
+@SpringBootTest(properties = "shop.catalog-snapshot.path=build/catalog-warmup-benchmark.snapshot")
+class CatalogWarmupBenchmarkTests {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogWarmupBenchmarkTests.class);
+
+    private static final int PRODUCTS = 2000;
+
+    @Autowired
+    private CatalogIndexer catalogIndexer;
+
+    @Autowired
+    private ProductSearchEngine searchEngine;
+
+    @Autowired
+    private CatalogFilterIndex filterIndex;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CatalogFixture catalog;
+
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        catalog.createCategory("warmup-benchmark");
+        products = catalog.createProducts("Warm-up product", PRODUCTS, 100);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        catalog.cleanUp();
+        Files.deleteIfExists(Paths.get("build/catalog-warmup-benchmark.snapshot"));
+    }
+
+    @Test
+    void snapshotWarmupAppliesLaterChanges() {
+        catalogIndexer.loadFromDatabase();
+        catalogIndexer.writeSnapshot();
+
+        long start = System.nanoTime();
+        assertTrue(catalogIndexer.loadFromSnapshot());
+        long currentSnapshot = System.nanoTime() - start;
+
+        Product renamed = products.get(0);
+        renamed.setName("Renamed after the snapshot");
+        productService.updateProduct(renamed.getId(), renamed);
+        Product sold = products.get(1);
+        productService.decreaseStock(sold.getId(), 7);
+
+        start = System.nanoTime();
+        assertTrue(catalogIndexer.loadFromSnapshot());
+        long staleSnapshot = System.nanoTime() - start;
+
+        assertEquals("Renamed after the snapshot",
+                searchEngine.getDocument(renamed.getId()).orElseThrow().getName());
+        assertEquals(93, filterIndex.stockOf(sold.getId()));
+
+        start = System.nanoTime();
+        catalogIndexer.loadFromDatabase();
+        long database = System.nanoTime() - start;
+
+        log.info("Catalog warm-up with {} seeded products: snapshot at the current version {} ms, "
+                        + "snapshot plus delta {} ms, database {} ms", PRODUCTS, currentSnapshot / 1_000_000,
+                staleSnapshot / 1_000_000, database / 1_000_000);
+    }
+}
@@ -0,0 +1,110 @@
+package com.shotx.shop;
+
+import com.shotx.shop.model.Order;
+import com.shotx.shop.model.OrderItem;
+import com.shotx.shop.model.Product;
+import com.shotx.shop.repository.ProductRepository;
+import com.shotx.shop.service.OrderService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Concurrent payments of multi-line orders sharing products, listed in opposite orders, must
+ * all go through without deadlocking, and stock decrements must not take catalog versions
+ */
+@SpringBootTest
+class OrderPaymentConcurrencyTests {
+
+    private static final int ROUNDS = 20;
+    private static final int STOCK = 1000;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogFixture catalog;
+
+    private final String username = "payment-concurrency-" + System.nanoTime();
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        catalog.createCategory("payment-concurrency");
+        products = catalog.createProducts("Payment product", 3, STOCK);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM order_item WHERE order_id IN (SELECT id FROM orders WHERE username = ?)", username);
+        jdbcTemplate.update("DELETE FROM orders WHERE username = ?", username);
+        catalog.cleanUp();
+    }
+
+    @Test
+    void paymentsSharingProductsDoNotDeadlock() throws Exception {
+        long catalogVersion = catalogSequence();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                Order forward = place(products.get(0), products.get(1), products.get(2));
+                Order backward = place(products.get(2), products.get(1), products.get(0));
+
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> payments = new ArrayList<>();
+                for (Order order : List.of(forward, backward)) {
+                    payments.add(executor.submit(() -> {
+                        start.await();
+                        return orderService.processSuccessfulPayment(order.getId(), "pi_" + order.getId());
+                    }));
+                }
+                start.countDown();
+                for (Future<?> payment : payments) {
+                    // Rethrows a deadlock or lock timeout from the worker
+                    payment.get(1, TimeUnit.MINUTES);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (Product product : products) {
+            assertEquals(STOCK - 2 * ROUNDS, productRepository.findById(product.getId()).orElseThrow().getStock());
+        }
+        assertEquals(catalogVersion, catalogSequence());
+    }
+
+    private Order place(Product... lines) {
+        List<OrderItem> items = new ArrayList<>();
+        for (Product product : lines) {
+            OrderItem item = new OrderItem();
+            item.setProductId(product.getId());
+            item.setQuantity(1);
+            items.add(item);
+        }
+        return orderService.placeOrder(username, items);
+    }
+
+    private long catalogSequence() {
+        return jdbcTemplate.queryForObject("SELECT value FROM catalog_sequence WHERE id = 1", Long.class);
+    }
+}
@@ -0,0 +1,149 @@
+package com.shotx.shop;
+
+import com.shotx.shop.model.Order;
+import com.shotx.shop.model.OrderItem;
+import com.shotx.shop.model.Product;
+import com.shotx.shop.repository.OrderRepository;
+import com.shotx.shop.repository.ProductRepository;
+import com.shotx.shop.service.OrderService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checkout latency against the number of order lines. Placing an order must read the products
+ * with one query however many lines it has; the median latency per line count is logged next
+ * to the previous per-line reads (a stock check and a price lookup by id for every line).
+ */
+@SpringBootTest
+@Transactional
+class OrderPlacementBenchmarkTests {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderPlacementBenchmarkTests.class);
+
+    private static final int[] LINE_COUNTS = {1, 10, 50, 200};
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 9;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CatalogFixture catalog;
+
+    private Statistics statistics;
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        statistics = catalog.statistics();
+        catalog.createCategory("order-benchmark");
+        products = catalog.createProducts("Order product", LINE_COUNTS[LINE_COUNTS.length - 1], 1_000_000);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void productReadsDoNotGrowWithOrderLines() {
+        for (int lines : LINE_COUNTS) {
+            long perLine = medianNanos(lines, this::placePerLine, 2L * lines);
+            long batched = medianNanos(lines, this::place, 1);
+
+            log.info("placeOrder with {} lines: median {} us with {} per-line product reads, "
+                            + "{} us with one product query", lines, perLine / 1_000, 2 * lines, batched / 1_000);
+        }
+    }
+
+    // Product reads are queries plus product loads. Both caches are emptied before every measured
+    // run: Product is in the second-level cache, which entityManager.clear() leaves alone.
+    private long medianNanos(int lines, IntFunction<Order> placement, long productReads) {
+        for (int run = 0; run < WARMUP_RUNS; run++) {
+            placement.apply(lines);
+        }
+        long[] nanos = new long[MEASURED_RUNS];
+        for (int run = 0; run < MEASURED_RUNS; run++) {
+            entityManager.flush();
+            entityManager.clear();
+            entityManagerFactory.getCache().evictAll();
+            statistics.clear();
+            long start = System.nanoTime();
+            Order order = placement.apply(lines);
+            entityManager.flush();
+            nanos[run] = System.nanoTime() - start;
+
+            assertEquals(lines, order.getItems().size());
+            assertEquals(productReads, statistics.getQueryExecutionCount()
+                    + statistics.getEntityStatistics(Product.class.getName()).getLoadCount());
+        }
+        Arrays.sort(nanos);
+        return nanos[MEASURED_RUNS / 2];
+    }
+
+    private Order place(int lines) {
+        return orderService.placeOrder("order-benchmark", items(lines));
+    }
+
+    // The reads placeOrder made before it batched them: a stock check and a price lookup per
+    // line, each a statement of its own. The check reads the stock column, so the lookup is not
+    // answered from the persistence context. Item inserts go through the same mapping, so only
+    // the product reads differ.
+    private Order placePerLine(int lines) {
+        List<OrderItem> items = items(lines);
+        for (OrderItem item : items) {
+            ProductRepository.StockLevel level = productRepository.findStockLevels(List.of(item.getProductId())).get(0);
+            assertTrue(level.getStock() >= item.getQuantity());
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        Order order = new Order();
+        for (OrderItem item : items) {
+            Product product = productRepository.findById(item.getProductId()).orElseThrow();
+            item.setPrice(product.getPrice());
+            item.setOrder(order);
+            total = total.add(product.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+        }
+        order.setUsername("order-benchmark");
+        order.setItems(items);
+        order.setTotalPrice(total);
+        order.setPaymentStatus(Order.PaymentStatus.PENDING);
+        return orderRepository.save(order);
+    }
+
+    private List<OrderItem> items(int lines) {
+        List<OrderItem> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            OrderItem item = new OrderItem();
+            item.setProductId(products.get(i).getId());
+            item.setQuantity(1);
+            items.add(item);
+        }
+        return items;
+    }
+}
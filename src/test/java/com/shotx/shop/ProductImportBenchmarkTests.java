@@ -0,0 +1,101 @@
+package com.shotx.shop;
+
+import com.shotx.shop.model.CatalogFileFormat;
+import com.shotx.shop.model.Category;
+import com.shotx.shop.model.Product;
+import com.shotx.shop.model.ProductImportReport;
+import com.shotx.shop.service.ProductImportService;
+import com.shotx.shop.service.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Import throughput against the per-row path (one POST /products per product), and
+ * malformed CSV ending an import with a report instead of an error
+ */
+@SpringBootTest
+class ProductImportBenchmarkTests {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImportBenchmarkTests.class);
+
+    private static final int ROWS = 2000;
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CatalogFixture catalog;
+
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        category = catalog.createCategory("import-benchmark");
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalog.cleanUp();
+    }
+
+    @Test
+    void batchedImportOutrunsPerRowInserts() throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROWS; i++) {
+            productService.createProduct(new Product("Per-row " + i, null, BigDecimal.TEN, category, 1));
+        }
+        double perRow = ROWS * 1e9 / (System.nanoTime() - start);
+
+        ProductImportReport singleRowBatches = importCsv(csv("single"), 1);
+        ProductImportReport batched = importCsv(csv("batched"), null);
+
+        log.info("{} products: per-row createProduct {} rows/s, import batchSize=1 {} rows/s, "
+                        + "import batchSize={} {} rows/s", ROWS, Math.round(perRow),
+                Math.round(singleRowBatches.getRowsPerSecond()), batched.getBatchSize(),
+                Math.round(batched.getRowsPerSecond()));
+        assertEquals(ROWS, singleRowBatches.getImported());
+        assertEquals(ROWS, batched.getImported());
+    }
+
+    @Test
+    void unterminatedQuoteIsReportedAfterEarlierBatches() throws Exception {
+        String body = "name,price,category_id\n"
+                + "First,1.00," + category.getId() + "\n"
+                + "Second,2.00," + category.getId() + "\n"
+                + "\"Broken,3.00," + category.getId() + "\n";
+
+        ProductImportReport report = importCsv(body, 1);
+
+        assertEquals(2, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(4, report.getErrors().get(0).line());
+    }
+
+    private String csv(String prefix) {
+        StringBuilder csv = new StringBuilder("name,description,price,category_id,stock\n");
+        for (int i = 0; i < ROWS; i++) {
+            csv.append(prefix).append(' ').append(i).append(",Imported,10.00,")
+                    .append(category.getId()).append(",1\n");
+        }
+        return csv.toString();
+    }
+
+    private ProductImportReport importCsv(String body, Integer batchSize) throws Exception {
+        return productImportService.importProducts(CatalogFileFormat.CSV,
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), batchSize);
+    }
+}
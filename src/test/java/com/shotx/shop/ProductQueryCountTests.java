@@ -0,0 +1,93 @@
+package com.shotx.shop;
+
+import com.shotx.shop.model.Category;
+import com.shotx.shop.model.Product;
+import com.shotx.shop.model.ProductImage;
+import com.shotx.shop.model.ProductSort;
+import com.shotx.shop.repository.ProductRepository;
+import com.shotx.shop.service.ProductService;
+import jakarta.persistence.EntityManager;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Catalog reads must issue a fixed number of statements no matter how many
+ * products (and images) they return
+ */
+@SpringBootTest
+@Transactional
+class ProductQueryCountTests {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private CatalogFixture catalog;
+
+    private Statistics statistics;
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        statistics = catalog.statistics();
+        category = catalog.createCategory("query-count");
+    }
+
+    @Test
+    void listingStatementCountDoesNotGrowWithProducts() {
+        seed(3);
+        long small = countStatements(() -> productService.getAllProducts());
+        seed(9);
+        long large = countStatements(() -> productService.getAllProducts());
+
+        assertEquals(1, small);
+        assertEquals(small, large);
+    }
+
+    @Test
+    void pageStatementCountDoesNotGrowWithPageSize() {
+        seed(12);
+        List<Long> categoryIds = List.of(category.getId());
+        long small = countStatements(() -> productService.getProductPage(categoryIds, ProductSort.ID, false, null, 3));
+        long large = countStatements(() -> productService.getProductPage(categoryIds, ProductSort.ID, false, null, 12));
+
+        // Product and category in one statement; images come from the denormalized columns
+        assertEquals(1, small);
+        assertEquals(small, large);
+    }
+
+    private void seed(int count) {
+        for (int i = 0; i < count; i++) {
+            Product product = new Product("Product " + i, "Description " + i,
+                    BigDecimal.valueOf(10 + i), category, 5);
+            product.addImage(new ProductImage("/images/" + i + "-a.jpg", product, true, 0));
+            product.addImage(new ProductImage("/images/" + i + "-b.jpg", product, false, 1));
+            product.syncImageSummary();
+            productRepository.save(product);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private long countStatements(Runnable read) {
+        entityManager.clear();
+        statistics.clear();
+        read.run();
+        return statistics.getPrepareStatementCount();
+    }
+}